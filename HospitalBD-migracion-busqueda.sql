@@ -0,0 +1,23 @@
+-- =================================================================
+-- MIGRACIÓN: ÍNDICES PARA LAS BÚSQUEDAS (PASO 5 de HospitalBD.sql)
+-- =================================================================
+-- Para una hospital_db creada con una versión anterior de HospitalBD.sql, que no tiene los
+-- índices de las búsquedas por cédula/código o nombre (ver TextSearch en el backend).
+-- Sin los índices FULLTEXT el servidor arranca igual, pero busca con LIKE (más lento) y lo
+-- avisa en el log; después de correr este script, reiniciarlo para que los use.
+--
+-- MySQL no tiene ADD INDEX IF NOT EXISTS: si un índice ya existe, su sentencia falla con
+-- "Duplicate key name" y se puede seguir con las demás.
+USE hospital_db;
+
+-- Igual que en HospitalBD.sql: los índices ngram se crean sin stopwords
+SET SESSION innodb_ft_enable_stopword = OFF;
+
+ALTER TABLE Paciente ADD INDEX idx_paciente_nombre (nombre, id);
+ALTER TABLE Paciente ADD FULLTEXT INDEX ft_paciente_nombre (nombre) WITH PARSER ngram;
+
+ALTER TABLE Usuario ADD INDEX idx_usuario_tipo_nombre (tipo, nombre, id);
+ALTER TABLE Usuario ADD FULLTEXT INDEX ft_usuario_nombre (nombre) WITH PARSER ngram;
+
+ALTER TABLE Medicamento ADD INDEX idx_medicamento_nombre (nombre, codigo);
+ALTER TABLE Medicamento ADD FULLTEXT INDEX ft_medicamento_nombre (nombre) WITH PARSER ngram;
@@ -38,8 +38,72 @@ CREATE TABLE MedicoDetalle (
         ON UPDATE CASCADE -- Si cambia el ID del Usuario, se actualiza aquí
 );
 
+-- Creación de la tabla Receta (encabezado; el código es "REC-" + número)
+CREATE TABLE Receta (
+    codigo VARCHAR(50) PRIMARY KEY,
+    id_paciente VARCHAR(50) NOT NULL,
+    id_medico VARCHAR(50) NOT NULL,
+    fecha_confeccion DATETIME NOT NULL,
+    fecha_retiro DATETIME,
+    estado VARCHAR(20) NOT NULL, -- CONFECCIONADA, PROCESO, LISTA o ENTREGADA
+    FOREIGN KEY (id_paciente) REFERENCES Paciente(id),
+    FOREIGN KEY (id_medico) REFERENCES Usuario(id)
+);
+
+-- Creación de la tabla LineaDetalle (un medicamento de la receta por fila)
+CREATE TABLE LineaDetalle (
+    id INT AUTO_INCREMENT PRIMARY KEY, -- Conserva el orden en que se agregaron las líneas
+    codigo_receta VARCHAR(50) NOT NULL,
+    codigo_medicamento VARCHAR(50) NOT NULL,
+    cantidad INT NOT NULL,
+    indicaciones VARCHAR(255),
+    duracion_tratamiento INT, -- En días
+    FOREIGN KEY (codigo_receta) REFERENCES Receta(codigo)
+        ON DELETE CASCADE, -- Si se borra la receta, se borran sus líneas
+    FOREIGN KEY (codigo_medicamento) REFERENCES Medicamento(codigo)
+);
+
+-- Creación de la tabla ConsumoMensual (cantidad prescrita por mes y medicamento, para el dashboard)
+-- El servidor la mantiene al crear cada receta y la rehace desde LineaDetalle si está vacía
+CREATE TABLE ConsumoMensual (
+    periodo INT NOT NULL, -- AAAAMM
+    codigo_medicamento VARCHAR(50) NOT NULL,
+    cantidad INT NOT NULL,
+    PRIMARY KEY (periodo, codigo_medicamento),
+    FOREIGN KEY (codigo_medicamento) REFERENCES Medicamento(codigo)
+);
+
+-- =================================================================
+-- PASO 5: ÍNDICES PARA LAS BÚSQUEDAS
+-- =================================================================
+-- Las búsquedas por cédula/código o nombre ya no usan LOWER(col) LIKE '%x%' (recorre toda la tabla):
+-- la cédula/código se busca por prefijo con la PRIMARY KEY y el nombre con un índice FULLTEXT ngram,
+-- que encuentra el texto en cualquier parte del nombre (ver TextSearch en el backend).
+-- Las tablas usan la intercalación por defecto (_ci): las comparaciones ya ignoran mayúsculas.
+--
+-- El parser ngram parte el texto en n-gramas de ngram_token_size letras (por defecto 2; se
+-- configura al iniciar MySQL y db.search.ngramTokenSize debe coincidir). Con ngram no se indexa
+-- un n-grama que contenga una stopword (p. ej. "a"), por eso se crean los índices sin stopwords.
+-- Si faltan los FULLTEXT, el servidor busca con LIKE en esa tabla y lo avisa al arrancar
+-- (db.search.mode=auto). Para una hospital_db ya creada: HospitalBD-migracion-busqueda.sql.
+SET SESSION innodb_ft_enable_stopword = OFF;
+
+-- Nombre + clave: búsqueda por prefijo del nombre y orden de la paginación (ORDER BY nombre, id)
+CREATE INDEX idx_paciente_nombre ON Paciente (nombre, id);
+CREATE FULLTEXT INDEX ft_paciente_nombre ON Paciente (nombre) WITH PARSER ngram;
+
+CREATE INDEX idx_usuario_tipo_nombre ON Usuario (tipo, nombre, id);
+CREATE FULLTEXT INDEX ft_usuario_nombre ON Usuario (nombre) WITH PARSER ngram;
+
+CREATE INDEX idx_medicamento_nombre ON Medicamento (nombre, codigo);
+CREATE FULLTEXT INDEX ft_medicamento_nombre ON Medicamento (nombre) WITH PARSER ngram;
+
+-- Histórico (ORDER BY fecha_confeccion DESC, codigo) y dashboard (por estado y por mes)
+CREATE INDEX idx_receta_fecha ON Receta (fecha_confeccion, codigo);
+CREATE INDEX idx_receta_estado ON Receta (estado);
+
 -- =================================================================
--- PASO 5: AÑADIR DATOS INICIALES (AQUÍ VAN LOS INSERTS)
+-- PASO 6: AÑADIR DATOS INICIALES (AQUÍ VAN LOS INSERTS)
 -- =================================================================
 INSERT INTO Usuario (id, clave, nombre, tipo) VALUES ('admin', 'admin', 'Administrador del Sistema', 'Administrador');
 
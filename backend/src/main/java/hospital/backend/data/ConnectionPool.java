@@ -0,0 +1,372 @@
+package hospital.backend.data;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool de conexiones JDBC (sin dependencias externas).
+ *
+ * Cada llamada de un DAO pide una conexión con borrow() y la devuelve al cerrarla: lo que
+ * recibe es un proxy de la conexión real cuyo close() la regresa al pool en vez de cerrarla.
+ * Así las peticiones concurrentes ya no se serializan sobre una sola conexión.
+ *
+ * Se configura con propiedades del sistema:
+ *   db.pool.min               conexiones que se abren al arrancar y se mantienen (2)
+ *   db.pool.max               máximo de conexiones abiertas a la vez (10)
+ *   db.pool.maxWaitMs         cuánto espera borrow() una conexión libre antes de fallar (5000)
+ *   db.pool.validateOnBorrow  verificar la conexión (isValid) antes de entregarla (true)
+ *   db.pool.validateTimeoutS  tiempo máximo de esa verificación, en segundos (2)
+ *   db.pool.leakMs            avisar si una conexión lleva prestada más que esto; 0 = no vigilar (30000)
+ *   db.pool.statementCache    sentencias preparadas que guarda cada conexión; 0 = no guardar (50)
+ */
+public class ConnectionPool {
+    private static final int MIN_SIZE = Integer.getInteger("db.pool.min", 2);
+    private static final int MAX_SIZE = Integer.getInteger("db.pool.max", 10);
+    private static final long MAX_WAIT_MS = Long.getLong("db.pool.maxWaitMs", 5000);
+    private static final boolean VALIDATE_ON_BORROW =
+            Boolean.parseBoolean(System.getProperty("db.pool.validateOnBorrow", "true"));
+    private static final int VALIDATE_TIMEOUT_S = Integer.getInteger("db.pool.validateTimeoutS", 2);
+    private static final long LEAK_MS = Long.getLong("db.pool.leakMs", 30000);
+    private static final int STATEMENT_CACHE = Integer.getInteger("db.pool.statementCache", 50);
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    // ReentrantLock y no synchronized: borrow() espera (y abre conexiones) con el lock
+    // tomado, y con hilos virtuales un monitor dejaría "pinned" al hilo carrier.
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<Connection> idle = new ArrayDeque<>(); // Conexiones reales libres
+    private int total = 0; // Abiertas (libres + prestadas + abriéndose)
+    private boolean closed = false;
+
+    // Préstamos en curso, para la detección de fugas
+    private final Set<Loan> loans = ConcurrentHashMap.newKeySet();
+    // Sentencias preparadas de cada conexión real (viven mientras viva la conexión)
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+
+    // --- Métricas ---
+    private final AtomicLong borrows = new AtomicLong();   // Préstamos entregados
+    private final AtomicLong waits = new AtomicLong();     // ... de ellos, cuántos tuvieron que esperar
+    private final AtomicLong waitNanos = new AtomicLong(); // Tiempo total esperando
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();  // borrow() que se rindieron
+    private final AtomicLong created = new AtomicLong();   // Conexiones abiertas
+    private final AtomicLong discarded = new AtomicLong(); // Conexiones descartadas por inválidas
+    private final AtomicLong leaks = new AtomicLong();     // Préstamos que superaron db.pool.leakMs
+
+    public ConnectionPool(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        // Abrimos las conexiones mínimas; si la BD no responde, lo avisamos y borrow()
+        // volverá a intentarlo (y fallará con el error del driver).
+        for (int i = 0; i < MIN_SIZE; i++) {
+            try {
+                Connection raw = open();
+                lock.lock();
+                try {
+                    total++;
+                    idle.push(raw);
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                System.err.println("Error al conectar a la base de datos: " + e.getMessage());
+                break;
+            }
+        }
+        if (LEAK_MS > 0) {
+            Thread detector = new Thread(this::detectLeaks, "pool-leaks");
+            detector.setDaemon(true);
+            detector.start();
+        }
+        System.out.println(">>> Pool de conexiones: " + total + " abiertas (min=" + MIN_SIZE + ", max=" + MAX_SIZE
+                + ", espera máx=" + MAX_WAIT_MS + " ms)");
+    }
+
+    /**
+     * Presta una conexión. Hay que cerrarla (idealmente con try-with-resources) para devolverla.
+     * @throws SQLException Si no se libera ninguna en db.pool.maxWaitMs o la BD no acepta conexiones.
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        boolean waited = false;
+        while (true) {
+            Connection raw = null;
+            boolean mustOpen = false;
+            lock.lock();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(MAX_WAIT_MS) - (System.nanoTime() - start);
+                while (!closed && idle.isEmpty() && total >= MAX_SIZE) {
+                    if (remaining <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new SQLException("No hay conexiones libres en el pool después de " + MAX_WAIT_MS
+                                + " ms (" + total + " abiertas, todas prestadas)");
+                    }
+                    waited = true;
+                    remaining = available.awaitNanos(remaining);
+                }
+                if (closed) {
+                    throw new SQLException("El pool de conexiones está cerrado");
+                }
+                if (!idle.isEmpty()) {
+                    raw = idle.pop(); // La más reciente: es la que menos probablemente expiró
+                } else {
+                    total++; // Reservamos el lugar; la abrimos fuera del lock
+                    mustOpen = true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrumpido esperando una conexión del pool");
+            } finally {
+                lock.unlock();
+            }
+
+            if (mustOpen) {
+                try {
+                    raw = open();
+                } catch (SQLException e) {
+                    forget();
+                    throw e;
+                }
+            } else if (VALIDATE_ON_BORROW && !isValid(raw)) {
+                // Se cayó mientras estaba libre (timeout del servidor, red): se descarta y se busca otra
+                discarded.incrementAndGet();
+                closeQuietly(raw);
+                forget();
+                continue;
+            }
+
+            long waitedNanos = System.nanoTime() - start;
+            borrows.incrementAndGet();
+            if (waited) {
+                waits.incrementAndGet();
+                waitNanos.addAndGet(waitedNanos);
+                maxWaitNanos.accumulateAndGet(waitedNanos, Math::max);
+            }
+            return lend(raw);
+        }
+    }
+
+    // Devuelve la conexión real al pool (lo llama el close() del proxy)
+    private void release(Connection raw) {
+        StatementCache statements = statementCaches.get(raw);
+        if (statements != null) {
+            int leftovers = statements.releaseLeftovers();
+            if (leftovers > 0) {
+                System.err.println(">>> Pool: se devolvió una conexión con " + leftovers + " sentencias sin cerrar");
+            }
+        }
+        boolean healthy = true;
+        try {
+            // Que el siguiente no herede una transacción a medias
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            raw.clearWarnings();
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        if (!healthy) {
+            discarded.incrementAndGet();
+            closeQuietly(raw);
+            forget();
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                total--;
+                closeQuietly(raw);
+            } else {
+                idle.push(raw);
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Una conexión dejó de existir: libera su lugar para que otro hilo pueda abrir una
+    private void forget() {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        created.incrementAndGet();
+        return raw;
+    }
+
+    private static boolean isValid(Connection raw) {
+        try {
+            return raw.isValid(VALIDATE_TIMEOUT_S);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void closeQuietly(Connection raw) {
+        statementCaches.remove(raw);
+        try {
+            raw.close();
+        } catch (SQLException e) {
+            // Ignorar errores al cerrar
+        }
+    }
+
+    // --- Préstamos (proxy de la conexión) ---
+
+    private Connection lend(Connection raw) {
+        Loan loan = new Loan(raw);
+        loans.add(loan);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, loan);
+    }
+
+    /**
+     * Un préstamo: reenvía todo a la conexión real, salvo close(), que la devuelve al pool.
+     * Usar la conexión después de cerrarla es un error (ya puede tenerla otro hilo).
+     */
+    private class Loan implements InvocationHandler {
+        private final Connection raw;
+        private final long since = System.nanoTime();
+        private final String thread = Thread.currentThread().getName();
+        // Dónde se pidió, para el aviso de fuga (solo si se vigilan)
+        private final Throwable origin = LEAK_MS > 0 ? new Throwable("Conexión pedida aquí") : null;
+        private volatile boolean returned = false;
+        private volatile boolean reported = false;
+
+        Loan(Connection raw) {
+            this.raw = raw;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        loans.remove(this);
+                        if (reported) {
+                            System.out.println(">>> Pool: la conexión prestada a " + thread + " se devolvió tras "
+                                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since) + " ms");
+                        }
+                        release(raw);
+                    }
+                    return null;
+                case "prepareStatement":
+                    if (args.length == 1 && !returned) { // Solo la forma simple (SQL sin opciones) se guarda
+                        return statementCaches.computeIfAbsent(raw, k -> new StatementCache(STATEMENT_CACHE))
+                                .prepare(raw, (String) args[0]);
+                    }
+                    return forward(method, args);
+                case "isClosed":
+                    return returned || raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Conexión del pool (" + thread + ")";
+                default:
+                    return forward(method, args);
+            }
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            if (returned) {
+                throw new SQLException("La conexión ya fue devuelta al pool");
+            }
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // Revisa periódicamente los préstamos y avisa (una vez por préstamo) de los que llevan demasiado
+    private void detectLeaks() {
+        long periodMs = Math.max(1000, LEAK_MS / 2);
+        while (true) {
+            try {
+                Thread.sleep(periodMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (Loan loan : loans) {
+                long heldMs = TimeUnit.NANOSECONDS.toMillis(now - loan.since);
+                if (!loan.reported && heldMs >= LEAK_MS) {
+                    loan.reported = true;
+                    leaks.incrementAndGet();
+                    System.err.println(">>> Pool: posible fuga, " + loan.thread + " tiene una conexión prestada hace "
+                            + heldMs + " ms sin devolverla");
+                    loan.origin.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // --- Métricas ---
+
+    /** Estado y métricas del pool en una línea. */
+    public String getStats() {
+        int open;
+        int free;
+        lock.lock();
+        try {
+            open = total;
+            free = idle.size();
+        } finally {
+            lock.unlock();
+        }
+        long w = waits.get();
+        return open + " abiertas (" + free + " libres, " + loans.size() + " prestadas), "
+                + borrows.get() + " préstamos, " + w + " con espera (prom. "
+                + (w == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.get() / w)) + " ms, máx. "
+                + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()) + " ms), " + timeouts.get() + " sin conexión, "
+                + created.get() + " creadas, " + discarded.get() + " descartadas, " + leaks.get() + " posibles fugas; "
+                + StatementCache.getStats();
+    }
+
+    /** Cierra las conexiones libres; las prestadas se cierran cuando las devuelvan. */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Connection raw : idle) {
+                closeQuietly(raw);
+                total--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
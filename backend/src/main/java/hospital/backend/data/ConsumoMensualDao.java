@@ -0,0 +1,136 @@
+package hospital.backend.data;
+
+import hospital.protocol.logic.LineaDetalle;
+import hospital.protocol.logic.Receta;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Data Access Object (DAO) para el resumen mensual de consumo de medicamentos.
+ * Interactúa con la tabla 'ConsumoMensual': la cantidad prescrita de cada medicamento en cada
+ * mes, ya sumada, para que el gráfico del dashboard no recorra todas las líneas de receta.
+ *
+ * Tabla esperada:
+ *   ConsumoMensual (periodo AAAAMM, codigo_medicamento FK Medicamento, cantidad;
+ *                   PK (periodo, codigo_medicamento))
+ *
+ * Se mantiene al crear cada receta (acumular, en la misma transacción) y se puede rehacer
+ * completo desde las líneas de receta (backfill).
+ */
+public class ConsumoMensualDao {
+
+    Database db = Database.getInstance();
+
+    /**
+     * Si la tabla tiene filas.
+     * @throws Exception Si ocurre un error de SQL (p. ej. la tabla no existe).
+     */
+    public boolean hayDatos() throws Exception {
+        String sql = "SELECT COUNT(*) FROM ConsumoMensual";
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            ResultSet rs = db.executeQuery(stm);
+            return rs.next() && rs.getLong(1) > 0;
+        } catch (SQLException ex) {
+            throw new Exception("Error al leer el consumo mensual: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Rehace todo el resumen desde las recetas y sus líneas.
+     * Para que sea atómico, llamarlo dentro de una UnitOfWork.
+     * @return Filas (mes, medicamento) del resumen.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public int backfill() throws Exception {
+        String sql = "INSERT INTO ConsumoMensual (periodo, codigo_medicamento, cantidad) " +
+                "SELECT YEAR(r.fecha_confeccion) * 100 + MONTH(r.fecha_confeccion), l.codigo_medicamento, SUM(l.cantidad) " +
+                "FROM Receta r " +
+                "INNER JOIN LineaDetalle l ON l.codigo_receta = r.codigo " +
+                "GROUP BY YEAR(r.fecha_confeccion) * 100 + MONTH(r.fecha_confeccion), l.codigo_medicamento";
+        try (Connection cn = db.getConnection();
+             PreparedStatement borrar = cn.prepareStatement("DELETE FROM ConsumoMensual");
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            db.executeUpdate(borrar);
+            return db.executeUpdate(stm);
+        } catch (SQLException ex) {
+            throw new Exception("Error al rehacer el consumo mensual: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Suma las líneas de una receta nueva al mes de su fecha de confección.
+     * Llamarlo en la misma UnitOfWork que crea la receta.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public void acumular(Receta r) throws Exception {
+        String sql = "INSERT INTO ConsumoMensual (periodo, codigo_medicamento, cantidad) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE cantidad = cantidad + VALUES(cantidad)";
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(r.getFechaConfeccion());
+        int periodo = cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            for (LineaDetalle linea : r.getLineasDetalle()) {
+                stm.setInt(1, periodo);
+                stm.setString(2, linea.getMedicamento().getCodigo());
+                stm.setInt(3, linea.getCantidad());
+                stm.addBatch();
+            }
+            db.executeBatch(stm);
+        } catch (SQLException ex) {
+            throw new Exception("Error al acumular el consumo mensual: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Suma las cantidades de los meses entre 'desde' y 'hasta' (inclusive).
+     * @param desde Primer mes, como AAAAMM.
+     * @param hasta Último mes, como AAAAMM.
+     * @param nombresMedicamentos Si no está vacía, solo se cuentan esos medicamentos.
+     * @return Un mapa ordenado {"AAAA-MM" -> Cantidad}, como RecetaDao.contarMedicamentosPorMes.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public Map<String, Integer> sumarPorMes(int desde, int hasta, List<String> nombresMedicamentos) throws Exception {
+        StringBuilder sql = new StringBuilder(
+                "SELECT c.periodo, SUM(c.cantidad) AS cantidad " +
+                "FROM ConsumoMensual c " +
+                "INNER JOIN Medicamento med ON med.codigo = c.codigo_medicamento " +
+                "WHERE c.periodo >= ? AND c.periodo <= ? ");
+        boolean filtrarNombres = nombresMedicamentos != null && !nombresMedicamentos.isEmpty();
+        if (filtrarNombres) {
+            sql.append("AND med.nombre IN (");
+            for (int i = 0; i < nombresMedicamentos.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(") ");
+        }
+        sql.append("GROUP BY c.periodo");
+
+        Map<String, Integer> resultado = new TreeMap<>();
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql.toString())) {
+            stm.setInt(1, desde);
+            stm.setInt(2, hasta);
+            if (filtrarNombres) {
+                for (int i = 0; i < nombresMedicamentos.size(); i++) {
+                    stm.setString(3 + i, nombresMedicamentos.get(i));
+                }
+            }
+            ResultSet rs = db.executeQuery(stm);
+            while (rs.next()) {
+                int periodo = rs.getInt("periodo");
+                resultado.put(String.format("%04d-%02d", periodo / 100, periodo % 100), rs.getInt("cantidad"));
+            }
+            return resultado;
+        } catch (SQLException ex) {
+            throw new Exception("Error al sumar el consumo mensual: " + ex.getMessage());
+        }
+    }
+}
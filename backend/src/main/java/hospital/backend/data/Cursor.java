@@ -0,0 +1,63 @@
+package hospital.backend.data;
+
+import hospital.protocol.Page;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Cursores de la paginación por clave (keyset): la última fila de una página se identifica
+ * por su clave de orden y su ID, y la página siguiente empieza justo después de ella
+ * ("WHERE (clave, id) > (?, ?)"), sin OFFSET: el costo no crece con el número de página.
+ *
+ * Para el cliente el cursor es un texto opaco (Base64 de "clave\0id").
+ */
+final class Cursor {
+    private static final char SEPARATOR = '\0';
+
+    final String key;
+    final String id;
+
+    private Cursor(String key, String id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    static String encode(String key, String id) {
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return El cursor, o null si el texto es null o vacío (primera página).
+     * @throws Exception Si el texto no es un cursor emitido por el servidor.
+     */
+    static Cursor decode(String cursor) throws Exception {
+        if (cursor == null || cursor.isEmpty()) return null;
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new Exception("Cursor de página inválido.");
+        }
+        int sep = raw.indexOf(SEPARATOR);
+        if (sep < 0) {
+            throw new Exception("Cursor de página inválido.");
+        }
+        return new Cursor(raw.substring(0, sep), raw.substring(sep + 1));
+    }
+
+    /**
+     * Arma la página a partir de las filas leídas con LIMIT pageSize + 1: si vino la fila de
+     * más, hay otra página y su cursor es el de la última fila que sí se devuelve.
+     */
+    static <T> Page<T> page(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new Page<>(new java.util.ArrayList<>(items), cursorOf.apply(items.get(pageSize - 1)));
+    }
+}
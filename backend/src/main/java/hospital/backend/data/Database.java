@@ -1,46 +1,120 @@
 package hospital.backend.data;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Database {
     // --- Atributos ---
-    private static Database instance = null; // Instancia única (Singleton)
-    private Connection connection;
+    private static volatile Database instance = null; // Instancia única (Singleton)
+    // Lock en vez de 'synchronized': la primera llamada abre la conexión (E/S) y, con
+    // hilos virtuales, bloquearse dentro de un monitor deja "pinned" al hilo carrier.
+    private static final ReentrantLock instanceLock = new ReentrantLock();
+    private ConnectionPool pool;
+    private ReadReplica replica; // null: sin réplica, todo va a la primaria (ver db.replica.url)
+
+    // Filas por viaje en las consultas en streaming (stream()): Integer.MIN_VALUE es el modo fila
+    // por fila de Connector/J; un valor positivo usa un cursor del servidor (useCursorFetch).
+    // H2 no acepta valores negativos: en la BD embebida, 0 (el valor por defecto del driver)
+    private static final int STREAM_FETCH_SIZE = Integer.getInteger("db.stream.fetchSize",
+            DatabaseConfig.EMBEDDED ? 0 : Integer.MIN_VALUE);
+
+    /** Trabajo que se ejecuta dentro de una transacción (ver inTransaction). */
+    public interface Work<T> {
+        T run() throws Exception;
+    }
+
+    /** Asigna los parámetros de una consulta (ver stream). */
+    public interface Parameters {
+        void set(PreparedStatement stm) throws SQLException;
+    }
+
+    /** Lee la fila actual del ResultSet (ver stream). */
+    public interface RowReader {
+        void read(ResultSet rs) throws Exception;
+    }
 
     // --- Constructor PRIVADO ---
     // Nadie excepto la propia clase puede crear una instancia.
     private Database() {
-        try {
-            // 1. URL de conexión: jdbc:mysql://[servidor]:[puerto]/[base_de_datos]
-            String url = "jdbc:mysql://localhost:3306/hospital_db";
-            // 2. Credenciales (esto se ajusta dependiendo de las credenciales del usuario)
-            String user = "root";
-            String password = "Jrcr1234@";
+        // 1. URL de conexión y credenciales: las del perfil elegido (ver DatabaseConfig)
+        // useCursorFetch: solo si las consultas en streaming leen por bloques (ver STREAM_FETCH_SIZE)
+        String url = STREAM_FETCH_SIZE > 0 ? DatabaseConfig.withCursorFetch(DatabaseConfig.URL) : DatabaseConfig.URL;
+        String user = DatabaseConfig.USER;
+        String password = DatabaseConfig.PASSWORD;
+        System.out.println(">>> Base de datos: " + DatabaseConfig.describe());
 
-            // 3. Establecer la conexión
-            this.connection = DriverManager.getConnection(url, user, password);
-            System.out.println("¡Conexión a la base de datos establecida con éxito!");
+        // 2. Crear el pool (abre las conexiones mínimas)
+        this.pool = new ConnectionPool(url, user, password);
 
-        } catch (SQLException e) {
-            System.err.println("Error al conectar a la base de datos: " + e.getMessage());
-            // En una aplicación real, aquí se manejaría el error de forma más robusta.
-            this.connection = null;
+        // 3. BD embebida: crear el esquema y cargar los datos sintéticos
+        if (DatabaseConfig.EMBEDDED) {
+            EmbeddedDatabase.load(pool);
+        }
+
+        // 4. Réplica de lectura, si está configurada
+        if (!ReadReplica.URL.isEmpty()) {
+            this.replica = new ReadReplica(System.getProperty("db.replica.user", user),
+                    System.getProperty("db.replica.password", password));
         }
     }
 
     // --- Método de acceso a la instancia (Singleton) ---
-    public static synchronized Database getInstance() {
-        if (instance == null) {
-            instance = new Database();
+    public static Database getInstance() {
+        Database result = instance;
+        if (result == null) {
+            instanceLock.lock();
+            try {
+                if (instance == null) {
+                    instance = new Database();
+                }
+                result = instance;
+            } finally {
+                instanceLock.unlock();
+            }
         }
-        return instance;
+        return result;
     }
 
     // --- Métodos para interactuar con la BD ---
 
-    // Prepara una consulta SQL
-    public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return connection.prepareStatement(sql);
+    /**
+     * Presta una conexión para una llamada de DAO; se devuelve al cerrarla, así que hay que
+     * usarla en un try-with-resources. Dentro de una UnitOfWork devuelve siempre la conexión
+     * de la unidad (y cerrarla no la suelta).
+     */
+    public Connection getConnection() throws SQLException {
+        Connection current = UnitOfWork.currentConnection();
+        if (current != null) {
+            return withoutClose(current);
+        }
+        return pool.borrow();
+    }
+
+    /**
+     * Presta una conexión para una consulta que tolera datos un poco atrasados (búsquedas,
+     * listados, histórico, dashboard): de la réplica si hay una al día y el cliente no acaba
+     * de escribir (ver ReadReplica); si no, de la primaria. Dentro de una UnitOfWork devuelve
+     * la conexión de la unidad, igual que getConnection().
+     */
+    public Connection getReadConnection() throws SQLException {
+        Connection current = UnitOfWork.currentConnection();
+        if (current != null) {
+            return withoutClose(current);
+        }
+        if (replica != null) {
+            Connection connection = replica.borrowIfFresh();
+            if (connection != null) {
+                return connection;
+            }
+        }
+        return pool.borrow();
+    }
+
+    // Una conexión propia del pool, para abrir una UnitOfWork
+    Connection borrow() throws SQLException {
+        return pool.borrow();
     }
 
     // Ejecuta una consulta que devuelve datos (SELECT)
@@ -50,18 +124,98 @@ public class Database {
 
     // Ejecuta una consulta que modifica datos (INSERT, UPDATE, DELETE)
     public int executeUpdate(PreparedStatement statement) throws SQLException {
+        ReplicaSession.recordWrite(); // El cliente vuelve a leer de la primaria por un rato
         return statement.executeUpdate();
     }
 
-    // Cierra la conexión
-    public void close() {
-        if (connection != null) {
-            try {
-                connection.close();
-                System.out.println("Conexión a la base de datos cerrada.");
-            } catch (SQLException e) {
-                System.err.println("Error al cerrar la conexión: " + e.getMessage());
+    // Ejecuta el lote acumulado con addBatch(): filas afectadas por cada elemento
+    public int[] executeBatch(PreparedStatement statement) throws SQLException {
+        ReplicaSession.recordWrite();
+        return statement.executeBatch();
+    }
+
+    /**
+     * Ejecuta una consulta en modo streaming: entrega cada fila a 'reader' a medida que llega,
+     * sin que el driver guarde el resultado completo en memoria (por defecto Connector/J lo
+     * trae todo antes de devolver el ResultSet). Lo único que queda en memoria es lo que guarde
+     * 'reader' (hoy, los DAOs arman su lista: se evita tener además la copia del driver).
+     *
+     * La sentencia es solo hacia adelante y de solo lectura, con fetch size STREAM_FETCH_SIZE.
+     * No pasa por la caché de sentencias (el fetch size quedaría en la sentencia guardada).
+     * Mientras se lee, la conexión no puede ejecutar otra consulta: 'reader' no debe usar la BD.
+     * Tampoco debe esperar a la red (p. ej. enviar las filas al cliente): la conexión del pool y
+     * el cursor siguen ocupados hasta la última fila. Para eso están las páginas por clave.
+     * Es una lectura: puede ir a la réplica (getReadConnection).
+     * @param parametros Asigna los parámetros (null si no hay).
+     * @throws Exception Si falla la consulta o 'reader' (en ese caso se cancela la consulta).
+     */
+    public void stream(String sql, Parameters parametros, RowReader reader) throws Exception {
+        try (Connection cn = getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stm.setFetchSize(STREAM_FETCH_SIZE);
+            if (parametros != null) {
+                parametros.set(stm);
+            }
+            try (ResultSet rs = stm.executeQuery()) {
+                try {
+                    while (rs.next()) {
+                        reader.read(rs);
+                    }
+                } catch (Exception e) {
+                    // Sin cancelar, cerrar el ResultSet leería (y descartaría) todas las filas que faltan
+                    cancelQuietly(stm);
+                    throw e;
+                }
             }
         }
     }
-}
\ No newline at end of file
+
+    private static void cancelQuietly(Statement stm) {
+        try {
+            stm.cancel();
+        } catch (SQLException e) {
+            // Ignorar: al cerrar se descartan las filas que falten
+        }
+    }
+
+    /**
+     * Ejecuta el trabajo en una sola transacción (una UnitOfWork): confirma si termina bien
+     * y deshace todo si lanza una excepción (que se propaga).
+     */
+    public <T> T inTransaction(Work<T> work) throws Exception {
+        try (UnitOfWork unit = UnitOfWork.begin()) {
+            T result = work.run();
+            unit.commit();
+            return result;
+        }
+    }
+
+    // La conexión de la unidad de trabajo, para un DAO: su close() no hace nada (la suelta la unidad)
+    private static Connection withoutClose(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /** Estado y métricas del pool de conexiones (y de la réplica, si hay). */
+    public String getPoolStats() {
+        return pool.getStats() + (replica == null ? "" : "; " + replica.getStats());
+    }
+
+    // Cierra las conexiones
+    public void close() {
+        pool.close();
+        if (replica != null) {
+            replica.close();
+        }
+        System.out.println("Conexiones a la base de datos cerradas.");
+    }
+}
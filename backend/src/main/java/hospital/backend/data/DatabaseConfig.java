@@ -0,0 +1,50 @@
+package hospital.backend.data;
+
+/**
+ * A qué BD se conecta el servidor. Se elige al arrancar con propiedades del sistema:
+ *   db.profile    mysql (por defecto): el MySQL local con el esquema de HospitalBD.sql
+ *                 h2: una BD embebida en memoria (H2 en modo MySQL), con el esquema completo y
+ *                 datos sintéticos (ver EmbeddedDatabase); no hace falta instalar MySQL.
+ *                 Requiere el driver de H2 en el classpath: mvn -P embedded ...
+ *   db.url        URL JDBC (por defecto, la del perfil)
+ *   db.user       usuario (por defecto, el del perfil)
+ *   db.password   clave (por defecto, la del perfil)
+ *
+ * Con el perfil h2 y un db.url propio se puede usar una BD H2 en archivo
+ * (p. ej. jdbc:h2:./hospital_db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE):
+ * los datos sintéticos se generan solo la primera vez.
+ */
+public final class DatabaseConfig {
+    public static final String PROFILE = System.getProperty("db.profile", "mysql").toLowerCase();
+    /** Si se usa la BD embebida (perfil h2). */
+    public static final boolean EMBEDDED = PROFILE.equals("h2");
+
+    // useServerPrepStmts: que el servidor prepare (y el pool guarde) cada sentencia una sola vez
+    // rewriteBatchedStatements: cada executeBatch() de INSERTs viaja como un solo INSERT multi-fila
+    private static final String MYSQL_URL =
+            "jdbc:mysql://localhost:3306/hospital_db?useServerPrepStmts=true&rewriteBatchedStatements=true";
+    // MODE=MySQL y DATABASE_TO_LOWER: el mismo SQL de los DAO; IGNORECASE: como la intercalación _ci;
+    // DB_CLOSE_DELAY=-1: la BD en memoria vive hasta que se apaga el servidor (no al cerrar una conexión)
+    private static final String H2_URL =
+            "jdbc:h2:mem:hospital_db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORECASE=TRUE;DB_CLOSE_DELAY=-1";
+
+    static final String URL = System.getProperty("db.url", EMBEDDED ? H2_URL : MYSQL_URL);
+    static final String USER = System.getProperty("db.user", EMBEDDED ? "sa" : "root");
+    static final String PASSWORD = System.getProperty("db.password", EMBEDDED ? "" : "Jrcr1234@");
+
+    private DatabaseConfig() {
+    }
+
+    // Connector/J solo lee por bloques con un cursor del servidor si la URL lo pide
+    static String withCursorFetch(String url) {
+        if (!url.startsWith("jdbc:mysql:") || url.contains("useCursorFetch")) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + "useCursorFetch=true";
+    }
+
+    /** Perfil y URL (sin credenciales), para el log de arranque. */
+    public static String describe() {
+        return "perfil " + PROFILE + ", " + URL;
+    }
+}
@@ -0,0 +1,228 @@
+package hospital.backend.data;
+
+import hospital.protocol.logic.EstadoReceta;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/**
+ * La BD embebida del perfil h2 (ver DatabaseConfig): crea el esquema completo
+ * (db/hospital-h2.sql, con las tablas de recetas) y la llena con datos sintéticos, para
+ * correr el servidor, las pruebas de carga y los benchmarks en cualquier máquina.
+ *
+ * Los datos salen de un generador con semilla fija: dos arranques con las mismas propiedades
+ * tienen exactamente los mismos datos, así los tiempos se pueden comparar entre corridas.
+ * Cuántas filas de cada tabla (propiedades del sistema):
+ *   db.embedded.pacientes     (5000)
+ *   db.embedded.medicos       (100)
+ *   db.embedded.farmaceutas   (20)
+ *   db.embedded.medicamentos  (1000)
+ *   db.embedded.recetas       (20000; cada una con 1 a 4 líneas)
+ *   db.embedded.dias          días hacia atrás en que caen las recetas (365)
+ *   db.embedded.seed          semilla del generador (42)
+ *
+ * Usuarios para entrar (la clave es igual al id): admin, el primer médico (200000001)
+ * y el primer farmaceuta (300000001). Los pacientes son 100000001, 100000002, ...;
+ * los medicamentos M00001, ...; las recetas REC-01, REC-02, ...
+ *
+ * Si la BD ya tiene usuarios (una BD H2 en archivo que ya se cargó), no se genera nada.
+ */
+final class EmbeddedDatabase {
+    private static final String SCHEMA = "classpath:/db/hospital-h2.sql";
+
+    private static final int PACIENTES = Integer.getInteger("db.embedded.pacientes", 5000);
+    private static final int MEDICOS = Integer.getInteger("db.embedded.medicos", 100);
+    private static final int FARMACEUTAS = Integer.getInteger("db.embedded.farmaceutas", 20);
+    private static final int MEDICAMENTOS = Integer.getInteger("db.embedded.medicamentos", 1000);
+    private static final int RECETAS = Integer.getInteger("db.embedded.recetas", 20000);
+    private static final int DIAS = Integer.getInteger("db.embedded.dias", 365);
+    private static final long SEED = Long.getLong("db.embedded.seed", 42);
+
+    private static final int FILAS_POR_LOTE = 1000; // executeBatch() + commit cada tantas filas
+    private static final long DIA_MS = 24L * 60 * 60 * 1000;
+
+    // Con tildes a propósito: las búsquedas las ignoran
+    private static final String[] NOMBRES = {"José", "María", "Andrés", "Sofía", "Luis", "Ana", "Martín",
+            "Lucía", "Carlos", "Valeria", "Jorge", "Camila", "Ramón", "Daniela", "Óscar", "Elena"};
+    private static final String[] APELLIDOS = {"Rodríguez", "Jiménez", "Pérez", "González", "Hernández",
+            "Vargas", "Mora", "Rojas", "Castro", "Solís", "Chaves", "Araya", "Quesada", "Núñez", "Calderón",
+            "Villalobos", "Alfaro", "Méndez", "Zúñiga", "Brenes"};
+    private static final String[] ESPECIALIDADES = {"Medicina General", "Pediatría", "Cardiología",
+            "Dermatología", "Ginecología", "Neurología", "Ortopedia", "Psiquiatría"};
+    private static final String[] FARMACOS = {"Acetaminofén", "Ibuprofeno", "Amoxicilina", "Omeprazol",
+            "Losartán", "Metformina", "Salbutamol", "Loratadina", "Diclofenaco", "Atorvastatina",
+            "Enalapril", "Cetirizina", "Azitromicina", "Prednisona", "Ranitidina", "Clonazepam"};
+    private static final String[] DOSIS = {"5 mg", "10 mg", "20 mg", "50 mg", "100 mg", "250 mg", "500 mg", "1 g"};
+    private static final String[] PRESENTACIONES = {"Tabletas", "Cápsulas", "Jarabe 120 ml", "Suspensión 60 ml",
+            "Crema 30 g", "Inhalador", "Ampolla"};
+    private static final String[] INDICACIONES = {"Cada 8 horas", "Cada 12 horas", "Una vez al día",
+            "Antes de cada comida", "Al acostarse", "Solo si hay dolor"};
+
+    private EmbeddedDatabase() {
+    }
+
+    /**
+     * Crea el esquema y, si la BD está vacía, carga los datos sintéticos.
+     * Si algo falla lo avisa: el servidor sigue y las consultas fallarán con el error de la BD.
+     */
+    static void load(ConnectionPool pool) {
+        long inicio = System.nanoTime();
+        try (Connection cn = pool.borrow()) {
+            try (Statement stm = cn.createStatement()) {
+                stm.execute("RUNSCRIPT FROM '" + SCHEMA + "' CHARSET 'UTF-8'");
+            }
+            if (hasData(cn)) {
+                System.out.println(">>> BD embebida: ya tiene datos, no se generan");
+                return;
+            }
+            cn.setAutoCommit(false);
+            new EmbeddedDatabase().generate(cn);
+            cn.commit();
+            cn.setAutoCommit(true);
+            System.out.println(">>> BD embebida: " + PACIENTES + " pacientes, " + MEDICOS + " médicos, "
+                    + FARMACEUTAS + " farmaceutas, " + MEDICAMENTOS + " medicamentos y " + RECETAS
+                    + " recetas generados (" + (System.nanoTime() - inicio) / 1_000_000 + " ms)");
+        } catch (SQLException e) {
+            System.err.println(">>> No se pudo cargar la BD embebida: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasData(Connection cn) throws SQLException {
+        try (Statement stm = cn.createStatement();
+             ResultSet rs = stm.executeQuery("SELECT COUNT(*) FROM Usuario")) {
+            return rs.next() && rs.getLong(1) > 0;
+        }
+    }
+
+    private final Random random = new Random(SEED);
+
+    private void generate(Connection cn) throws SQLException {
+        try (Lote usuarios = new Lote(cn, "INSERT INTO Usuario (id, clave, nombre, tipo) VALUES (?, ?, ?, ?)");
+             Lote detalles = new Lote(cn, "INSERT INTO MedicoDetalle (id_medico, especialidad) VALUES (?, ?)", usuarios)) {
+            usuarios.add("admin", "admin", "Administrador del Sistema", "Administrador");
+            for (int i = 1; i <= MEDICOS; i++) {
+                String id = medicoId(i);
+                usuarios.add(id, id, "Dr. " + nombreCompleto(), "Medico");
+            }
+            for (int i = 1; i <= MEDICOS; i++) {
+                detalles.add(medicoId(i), pick(ESPECIALIDADES));
+            }
+            for (int i = 1; i <= FARMACEUTAS; i++) {
+                String id = String.format("3%08d", i);
+                usuarios.add(id, id, nombreCompleto(), "Farmaceuta");
+            }
+        }
+
+        long hoy = System.currentTimeMillis();
+        try (Lote pacientes = new Lote(cn, "INSERT INTO Paciente (id, nombre, fechaNacimiento, telefono) VALUES (?, ?, ?, ?)")) {
+            for (int i = 1; i <= PACIENTES; i++) {
+                long nacimiento = hoy - (long) (random.nextDouble() * 90 * 365) * DIA_MS;
+                pacientes.add(pacienteId(i), nombreCompleto(), new java.sql.Date(nacimiento),
+                        String.format("%d%07d", 6 + random.nextInt(3), random.nextInt(10_000_000)));
+            }
+        }
+
+        try (Lote medicamentos = new Lote(cn, "INSERT INTO Medicamento (codigo, nombre, presentacion) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= MEDICAMENTOS; i++) {
+                medicamentos.add(medicamentoCodigo(i), pick(FARMACOS) + " " + pick(DOSIS), pick(PRESENTACIONES));
+            }
+        }
+
+        try (Lote recetas = new Lote(cn, "INSERT INTO Receta (codigo, id_paciente, id_medico, fecha_confeccion, " +
+                "fecha_retiro, estado) VALUES (?, ?, ?, ?, ?, ?)");
+             Lote lineas = new Lote(cn, "INSERT INTO LineaDetalle (codigo_receta, codigo_medicamento, cantidad, " +
+                     "indicaciones, duracion_tratamiento) VALUES (?, ?, ?, ?, ?)", recetas)) {
+            for (int i = 1; i <= RECETAS; i++) {
+                String codigo = String.format("REC-%02d", i);
+                long confeccion = hoy - (long) (random.nextDouble() * DIAS * DIA_MS);
+                long retiro = confeccion + (1 + random.nextInt(7)) * DIA_MS;
+                recetas.add(codigo, pacienteId(1 + random.nextInt(PACIENTES)), medicoId(1 + random.nextInt(MEDICOS)),
+                        new Timestamp(confeccion), new Timestamp(retiro), estado(hoy - confeccion).name());
+                int cantidadLineas = 1 + random.nextInt(4);
+                for (int k = 0; k < cantidadLineas; k++) {
+                    lineas.add(codigo, medicamentoCodigo(1 + random.nextInt(MEDICAMENTOS)), 1 + random.nextInt(30),
+                            pick(INDICACIONES), 1 + random.nextInt(30));
+                }
+            }
+        }
+    }
+
+    // Las recetas viejas ya se entregaron; las de la última semana están en cualquier estado
+    private EstadoReceta estado(long edadMs) {
+        EstadoReceta[] estados = EstadoReceta.values();
+        if (edadMs > 7 * DIA_MS && random.nextInt(10) > 0) {
+            return EstadoReceta.ENTREGADA;
+        }
+        return estados[random.nextInt(estados.length)];
+    }
+
+    private String nombreCompleto() {
+        return pick(NOMBRES) + " " + pick(APELLIDOS) + " " + pick(APELLIDOS);
+    }
+
+    private String pick(String[] valores) {
+        return valores[random.nextInt(valores.length)];
+    }
+
+    private static String medicoId(int i) {
+        return String.format("2%08d", i);
+    }
+
+    private static String pacienteId(int i) {
+        return String.format("1%08d", i);
+    }
+
+    private static String medicamentoCodigo(int i) {
+        return String.format("M%05d", i);
+    }
+
+    // Un INSERT que se manda en lotes de FILAS_POR_LOTE filas, cada lote en su propio commit
+    private static final class Lote implements AutoCloseable {
+        private final Connection cn;
+        private final PreparedStatement stm;
+        private final Lote padre; // Sus filas van antes (las FK de este lote apuntan a ellas)
+        private int pendientes = 0;
+
+        Lote(Connection cn, String sql) throws SQLException {
+            this(cn, sql, null);
+        }
+
+        Lote(Connection cn, String sql, Lote padre) throws SQLException {
+            this.cn = cn;
+            this.stm = cn.prepareStatement(sql);
+            this.padre = padre;
+        }
+
+        void add(Object... valores) throws SQLException {
+            for (int i = 0; i < valores.length; i++) {
+                stm.setObject(i + 1, valores[i]);
+            }
+            stm.addBatch();
+            if (++pendientes == FILAS_POR_LOTE) {
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (padre != null) padre.flush();
+            if (pendientes == 0) return;
+            stm.executeBatch();
+            cn.commit();
+            pendientes = 0;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                stm.close();
+            }
+        }
+    }
+}
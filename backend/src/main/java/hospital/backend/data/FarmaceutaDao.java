@@ -1,6 +1,8 @@
 package hospital.backend.data;
 
+import hospital.protocol.Page;
 import hospital.protocol.logic.Farmaceuta; // Importa la entidad desde protocol
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -14,6 +16,8 @@ import java.util.List;
 public class FarmaceutaDao {
 
     Database db = Database.getInstance(); // Conexión Singleton
+    // Filtro por cédula o nombre con los índices de búsqueda (ver TextSearch)
+    private static final TextSearch BUSQUEDA = new TextSearch("Usuario", "id", "nombre");
 
     // --- Métodos CRUD ---
 
@@ -25,8 +29,8 @@ public class FarmaceutaDao {
      */
     public void create(Farmaceuta far) throws Exception {
         String sql = "INSERT INTO Usuario (id, clave, nombre, tipo) VALUES (?, ?, ?, 'Farmaceuta')";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, far.getId());
             // Si la clave viene vacía o nula, usar el ID como clave por defecto
             String clave = (far.getClave() != null && !far.getClave().isEmpty()) ? far.getClave() : far.getId();
@@ -51,8 +55,8 @@ public class FarmaceutaDao {
      */
     public Farmaceuta read(String id) throws Exception {
         String sql = "SELECT * FROM Usuario WHERE id = ? AND tipo = 'Farmaceuta'";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);
             ResultSet rs = db.executeQuery(stm);
             if (rs.next()) {
@@ -72,8 +76,8 @@ public class FarmaceutaDao {
      */
     public void update(Farmaceuta far) throws Exception {
         String sql = "UPDATE Usuario SET nombre = ? WHERE id = ? AND tipo = 'Farmaceuta'";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, far.getNombre());
             stm.setString(2, far.getId()); // Condición WHERE
 
@@ -93,8 +97,8 @@ public class FarmaceutaDao {
      */
     public void delete(String id) throws Exception {
         String sql = "DELETE FROM Usuario WHERE id = ? AND tipo = 'Farmaceuta'";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);
 
             int count = db.executeUpdate(stm);
@@ -117,11 +121,8 @@ public class FarmaceutaDao {
         List<Farmaceuta> resultado = new ArrayList<>();
         String sql = "SELECT * FROM Usuario WHERE tipo = 'Farmaceuta' ORDER BY nombre";
         try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            ResultSet rs = db.executeQuery(stm);
-            while (rs.next()) {
-                resultado.add(from(rs));
-            }
+            // En streaming: el driver no guarda su propia copia del resultado además de la lista
+            db.stream(sql, null, rs -> resultado.add(from(rs)));
             return resultado;
         } catch (SQLException ex) {
             throw new Exception("Error al obtener todos los farmaceutas: " + ex.getMessage());
@@ -129,19 +130,19 @@ public class FarmaceutaDao {
     }
 
     /**
-     * Busca Farmaceutas cuyo ID o nombre contenga el filtro (ignorando mayúsculas/minúsculas).
+     * Busca Farmaceutas cuyo ID empiece con el filtro o cuyo nombre lo contenga (sin distinguir mayúsculas).
      * @param filtro El texto a buscar en ID o nombre.
      * @return Una lista de objetos Farmaceuta que coinciden.
      * @throws Exception Si ocurre un error de SQL.
      */
     public List<Farmaceuta> search(String filtro) throws Exception {
         List<Farmaceuta> resultado = new ArrayList<>();
-        String sql = "SELECT * FROM Usuario WHERE tipo = 'Farmaceuta' AND (LOWER(id) LIKE ? OR LOWER(nombre) LIKE ?) ORDER BY nombre";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            String filtroLike = "%" + filtro.toLowerCase() + "%";
-            stm.setString(1, filtroLike);
-            stm.setString(2, filtroLike);
+        String condicion = BUSQUEDA.condition("");
+        String sql = "SELECT * FROM Usuario " + BUSQUEDA.join(filtro, "Usuario.id") +
+                "WHERE tipo = 'Farmaceuta' " + (condicion == null ? "" : "AND " + condicion + " ") + "ORDER BY nombre";
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            BUSQUEDA.bind(stm, 1, filtro);
             ResultSet rs = db.executeQuery(stm);
             while (rs.next()) {
                 resultado.add(from(rs));
@@ -152,6 +153,46 @@ public class FarmaceutaDao {
         }
     }
 
+    /**
+     * Una página de la búsqueda (o de todos, con el filtro vacío), ordenada por nombre y cédula.
+     * Paginación por clave: cada página sigue después de la última fila de la anterior, sin OFFSET.
+     * @param filtro Texto a buscar en cédula o nombre ("" = todos).
+     * @param pageSize Filas por página.
+     * @param cursor El de la página anterior (null = primera página).
+     * @return La página, con el cursor de la siguiente (null si es la última).
+     * @throws Exception Si ocurre un error de SQL o el cursor no es válido.
+     */
+    public Page<Farmaceuta> searchPage(String filtro, int pageSize, String cursor) throws Exception {
+        Cursor after = Cursor.decode(cursor);
+        boolean filtrar = filtro != null && !filtro.isEmpty();
+        List<String> condiciones = new ArrayList<>();
+        condiciones.add("tipo = 'Farmaceuta'");
+        if (filtrar && BUSQUEDA.condition("") != null) condiciones.add(BUSQUEDA.condition(""));
+        if (after != null) condiciones.add("(nombre > ? OR (nombre = ? AND id > ?))");
+        String sql = "SELECT * FROM Usuario " + (filtrar ? BUSQUEDA.join(filtro, "Usuario.id") : "") +
+                (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + " ") +
+                "ORDER BY nombre, id LIMIT ?";
+        List<Farmaceuta> filas = new ArrayList<>();
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            int i = 1;
+            if (filtrar) i = BUSQUEDA.bind(stm, i, filtro);
+            if (after != null) {
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.id);
+            }
+            stm.setInt(i, pageSize + 1); // Una fila de más: si llega, hay otra página
+            ResultSet rs = db.executeQuery(stm);
+            while (rs.next()) {
+                filas.add(from(rs));
+            }
+        } catch (SQLException ex) {
+            throw new Exception("Error al buscar farmaceutas: " + ex.getMessage());
+        }
+        return Cursor.page(filas, pageSize, f -> Cursor.encode(f.getNombre(), f.getId()));
+    }
+
     // --- Método de Mapeo ---
 
     /**
@@ -1,6 +1,8 @@
 package hospital.backend.data;
 
+import hospital.protocol.Page;
 import hospital.protocol.logic.Medicamento; // Importa la entidad desde protocol
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,6 +17,8 @@ public class MedicamentoDao {
 
     // Obtenemos la instancia Singleton de la base de datos para usar la conexión
     Database db = Database.getInstance();
+    // Filtro por código o nombre con los índices de búsqueda (ver TextSearch)
+    private static final TextSearch BUSQUEDA = new TextSearch("Medicamento", "codigo", "nombre");
 
     // --- Métodos CRUD ---
 
@@ -25,8 +29,8 @@ public class MedicamentoDao {
      */
     public void create(Medicamento med) throws Exception {
         String sql = "INSERT INTO Medicamento (codigo, nombre, presentacion) VALUES (?, ?, ?)";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, med.getCodigo());
             stm.setString(2, med.getNombre());
             stm.setString(3, med.getPresentacion());
@@ -48,8 +52,8 @@ public class MedicamentoDao {
      */
     public Medicamento read(String codigo) throws Exception {
         String sql = "SELECT * FROM Medicamento WHERE codigo = ?";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, codigo);
             ResultSet rs = db.executeQuery(stm);
             if (rs.next()) {
@@ -69,8 +73,8 @@ public class MedicamentoDao {
      */
     public void update(Medicamento med) throws Exception {
         String sql = "UPDATE Medicamento SET nombre = ?, presentacion = ? WHERE codigo = ?";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, med.getNombre());
             stm.setString(2, med.getPresentacion());
             stm.setString(3, med.getCodigo());
@@ -91,8 +95,8 @@ public class MedicamentoDao {
      */
     public void delete(String codigo) throws Exception {
         String sql = "DELETE FROM Medicamento WHERE codigo = ?";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, codigo);
 
             int count = db.executeUpdate(stm);
@@ -115,11 +119,8 @@ public class MedicamentoDao {
         List<Medicamento> resultado = new ArrayList<>();
         String sql = "SELECT * FROM Medicamento ORDER BY nombre"; // Orden alfabético
         try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            ResultSet rs = db.executeQuery(stm);
-            while (rs.next()) {
-                resultado.add(from(rs));
-            }
+            // En streaming: el driver no guarda su propia copia del resultado además de la lista
+            db.stream(sql, null, rs -> resultado.add(from(rs)));
             return resultado;
         } catch (SQLException ex) {
             throw new Exception("Error al obtener todos los medicamentos: " + ex.getMessage());
@@ -127,21 +128,20 @@ public class MedicamentoDao {
     }
 
     /**
-     * Busca medicamentos cuyo código o nombre contenga el filtro proporcionado.
+     * Busca medicamentos cuyo código empiece con el filtro o cuyo nombre lo contenga.
      * @param filtro El texto a buscar en código o nombre.
      * @return Una lista de objetos Medicamento que coinciden.
      * @throws Exception Si ocurre un error de SQL.
      */
     public List<Medicamento> search(String filtro) throws Exception {
         List<Medicamento> resultado = new ArrayList<>();
-        // Usamos LIKE '%filtro%' para búsquedas parciales (contiene)
-        // Usamos LOWER() para que la búsqueda no sea sensible a mayúsculas/minúsculas
-        String sql = "SELECT * FROM Medicamento WHERE LOWER(codigo) LIKE ? OR LOWER(nombre) LIKE ? ORDER BY nombre";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            String filtroLike = "%" + filtro.toLowerCase() + "%";
-            stm.setString(1, filtroLike);
-            stm.setString(2, filtroLike);
+        // Código por prefijo y nombre con el índice FULLTEXT (o LIKE '%filtro%' en modo like)
+        String condicion = BUSQUEDA.condition("");
+        String sql = "SELECT * FROM Medicamento " + BUSQUEDA.join(filtro, "Medicamento.codigo") +
+                (condicion == null ? "" : "WHERE " + condicion + " ") + "ORDER BY nombre";
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            BUSQUEDA.bind(stm, 1, filtro);
             ResultSet rs = db.executeQuery(stm);
             while (rs.next()) {
                 resultado.add(from(rs));
@@ -152,6 +152,45 @@ public class MedicamentoDao {
         }
     }
 
+    /**
+     * Una página de la búsqueda (o de todos, con el filtro vacío), ordenada por nombre y código.
+     * Paginación por clave: cada página sigue después de la última fila de la anterior, sin OFFSET.
+     * @param filtro Texto a buscar en código o nombre ("" = todos).
+     * @param pageSize Filas por página.
+     * @param cursor El de la página anterior (null = primera página).
+     * @return La página, con el cursor de la siguiente (null si es la última).
+     * @throws Exception Si ocurre un error de SQL o el cursor no es válido.
+     */
+    public Page<Medicamento> searchPage(String filtro, int pageSize, String cursor) throws Exception {
+        Cursor after = Cursor.decode(cursor);
+        boolean filtrar = filtro != null && !filtro.isEmpty();
+        List<String> condiciones = new ArrayList<>();
+        if (filtrar && BUSQUEDA.condition("") != null) condiciones.add(BUSQUEDA.condition(""));
+        if (after != null) condiciones.add("(nombre > ? OR (nombre = ? AND codigo > ?))");
+        String sql = "SELECT * FROM Medicamento " + (filtrar ? BUSQUEDA.join(filtro, "Medicamento.codigo") : "") +
+                (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + " ") +
+                "ORDER BY nombre, codigo LIMIT ?";
+        List<Medicamento> filas = new ArrayList<>();
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            int i = 1;
+            if (filtrar) i = BUSQUEDA.bind(stm, i, filtro);
+            if (after != null) {
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.id);
+            }
+            stm.setInt(i, pageSize + 1); // Una fila de más: si llega, hay otra página
+            ResultSet rs = db.executeQuery(stm);
+            while (rs.next()) {
+                filas.add(from(rs));
+            }
+        } catch (SQLException ex) {
+            throw new Exception("Error al buscar medicamentos: " + ex.getMessage());
+        }
+        return Cursor.page(filas, pageSize, m -> Cursor.encode(m.getNombre(), m.getCodigo()));
+    }
+
     // --- Método de Mapeo ---
 
     /**
@@ -1,6 +1,8 @@
 package hospital.backend.data;
 
+import hospital.protocol.Page;
 import hospital.protocol.logic.Medico; // Importa la entidad Medico
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -14,11 +16,14 @@ import java.util.List;
 public class MedicoDao {
 
     Database db = Database.getInstance();
+    // Filtro por cédula o nombre con los índices de búsqueda (ver TextSearch)
+    private static final TextSearch BUSQUEDA = new TextSearch("Usuario", "id", "nombre");
 
     // --- Métodos CRUD ---
 
     /**
      * Inserta un nuevo Medico en las tablas Usuario y MedicoDetalle.
+     * Para que sea atómico, llamarlo dentro de una UnitOfWork.
      * @param med El objeto Medico a insertar.
      * @throws Exception Si ocurre un error de SQL o el ID ya existe.
      */
@@ -28,20 +33,18 @@ public class MedicoDao {
         // Paso 2: Insertar en la tabla MedicoDetalle
         String sqlDetalle = "INSERT INTO MedicoDetalle (id_medico, especialidad) VALUES (?, ?)";
 
-        PreparedStatement stmUsuario = null;
-        PreparedStatement stmDetalle = null;
-        try {
-            // Preparar ambas sentencias
-            stmUsuario = db.prepareStatement(sqlUsuario);
+        // Preparar ambas sentencias sobre la misma conexión
+        try (Connection cn = db.getConnection();
+             PreparedStatement stmUsuario = cn.prepareStatement(sqlUsuario);
+             PreparedStatement stmDetalle = cn.prepareStatement(sqlDetalle)) {
             stmUsuario.setString(1, med.getId());
             stmUsuario.setString(2, med.getClave());
             stmUsuario.setString(3, med.getNombre());
 
-            stmDetalle = db.prepareStatement(sqlDetalle);
             stmDetalle.setString(1, med.getId());
             stmDetalle.setString(2, med.getEspecialidad());
 
-            // Ejecutar ambas inserciones (idealmente en una transacción, pero lo simplificamos)
+            // Ejecutar ambas inserciones (el Service las envuelve en una UnitOfWork)
             int countUsuario = db.executeUpdate(stmUsuario);
             if (countUsuario == 0) {
                 throw new Exception("Médico no creado en Usuario, 0 filas afectadas.");
@@ -49,18 +52,12 @@ public class MedicoDao {
             // Solo insertamos en detalle si la inserción en Usuario fue exitosa
             int countDetalle = db.executeUpdate(stmDetalle);
             if (countDetalle == 0) {
-                // Si falla aquí, deberíamos deshacer la inserción en Usuario (rollback),
-                // pero por simplicidad, lanzamos la excepción.
+                // Si falla aquí, la UnitOfWork del Service deshace la inserción en Usuario
                 throw new Exception("Médico no creado en MedicoDetalle, 0 filas afectadas.");
             }
 
         } catch (SQLException ex) {
-            // Podríamos intentar deshacer la primera inserción si la segunda falla
             throw new Exception("Error al crear el médico: " + ex.getMessage());
-        } finally {
-            // Es buena práctica cerrar los PreparedStatements aunque Database maneje la conexión
-            if (stmUsuario != null) try { stmUsuario.close(); } catch (SQLException e) {}
-            if (stmDetalle != null) try { stmDetalle.close(); } catch (SQLException e) {}
         }
     }
 
@@ -75,8 +72,8 @@ public class MedicoDao {
         String sql = "SELECT u.id, u.clave, u.nombre, u.tipo, md.especialidad " +
                 "FROM Usuario u INNER JOIN MedicoDetalle md ON u.id = md.id_medico " +
                 "WHERE u.id = ? AND u.tipo = 'Medico'"; // Aseguramos que sea médico
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);
             ResultSet rs = db.executeQuery(stm);
             if (rs.next()) {
@@ -92,17 +89,17 @@ public class MedicoDao {
 
     /**
      * Actualiza el nombre (en Usuario) y la especialidad (en MedicoDetalle).
+     * Para que sea atómico, llamarlo dentro de una UnitOfWork.
      * @param med El objeto Medico con la información actualizada.
      * @throws Exception Si ocurre un error de SQL o el médico no existe.
      */
     public void update(Medico med) throws Exception {
         String sqlUsuario = "UPDATE Usuario SET nombre = ? WHERE id = ? AND tipo = 'Medico'";
         String sqlDetalle = "UPDATE MedicoDetalle SET especialidad = ? WHERE id_medico = ?";
-        PreparedStatement stmUsuario = null;
-        PreparedStatement stmDetalle = null;
-        try {
+        try (Connection cn = db.getConnection();
+             PreparedStatement stmUsuario = cn.prepareStatement(sqlUsuario);
+             PreparedStatement stmDetalle = cn.prepareStatement(sqlDetalle)) {
             // Actualizar nombre en Usuario
-            stmUsuario = db.prepareStatement(sqlUsuario);
             stmUsuario.setString(1, med.getNombre());
             stmUsuario.setString(2, med.getId());
             int countUsuario = db.executeUpdate(stmUsuario);
@@ -111,7 +108,6 @@ public class MedicoDao {
             }
 
             // Actualizar especialidad en MedicoDetalle
-            stmDetalle = db.prepareStatement(sqlDetalle);
             stmDetalle.setString(1, med.getEspecialidad());
             stmDetalle.setString(2, med.getId());
             int countDetalle = db.executeUpdate(stmDetalle);
@@ -120,9 +116,6 @@ public class MedicoDao {
 
         } catch (SQLException ex) {
             throw new Exception("Error al actualizar el médico: " + ex.getMessage());
-        } finally {
-            if (stmUsuario != null) try { stmUsuario.close(); } catch (SQLException e) {}
-            if (stmDetalle != null) try { stmDetalle.close(); } catch (SQLException e) {}
         }
     }
 
@@ -135,8 +128,8 @@ public class MedicoDao {
         // Solo necesitamos borrar de la tabla Usuario
         // La restricción FOREIGN KEY con ON DELETE CASCADE se encarga de MedicoDetalle
         String sql = "DELETE FROM Usuario WHERE id = ? AND tipo = 'Medico'";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);
             int count = db.executeUpdate(stm);
             if (count == 0) {
@@ -161,11 +154,8 @@ public class MedicoDao {
                 "FROM Usuario u INNER JOIN MedicoDetalle md ON u.id = md.id_medico " +
                 "WHERE u.tipo = 'Medico' ORDER BY u.nombre";
         try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            ResultSet rs = db.executeQuery(stm);
-            while (rs.next()) {
-                resultado.add(from(rs));
-            }
+            // En streaming: el driver no guarda su propia copia del resultado además de la lista
+            db.stream(sql, null, rs -> resultado.add(from(rs)));
             return resultado;
         } catch (SQLException ex) {
             throw new Exception("Error al obtener todos los médicos: " + ex.getMessage());
@@ -181,15 +171,15 @@ public class MedicoDao {
     public List<Medico> search(String filtro) throws Exception {
         List<Medico> resultado = new ArrayList<>();
         // JOIN con filtro por ID o nombre en Usuario, asegurando que sean Médicos
+        String condicion = BUSQUEDA.condition("u.");
         String sql = "SELECT u.id, u.clave, u.nombre, u.tipo, md.especialidad " +
                 "FROM Usuario u INNER JOIN MedicoDetalle md ON u.id = md.id_medico " +
-                "WHERE u.tipo = 'Medico' AND (LOWER(u.id) LIKE ? OR LOWER(u.nombre) LIKE ?) " +
+                BUSQUEDA.join(filtro, "u.id") +
+                "WHERE u.tipo = 'Medico' " + (condicion == null ? "" : "AND " + condicion + " ") +
                 "ORDER BY u.nombre";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            String filtroLike = "%" + filtro.toLowerCase() + "%";
-            stm.setString(1, filtroLike);
-            stm.setString(2, filtroLike);
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            BUSQUEDA.bind(stm, 1, filtro);
             ResultSet rs = db.executeQuery(stm);
             while (rs.next()) {
                 resultado.add(from(rs));
@@ -200,6 +190,48 @@ public class MedicoDao {
         }
     }
 
+    /**
+     * Una página de la búsqueda (o de todos, con el filtro vacío), ordenada por nombre y cédula.
+     * Paginación por clave: cada página sigue después de la última fila de la anterior, sin OFFSET.
+     * @param filtro Texto a buscar en cédula o nombre ("" = todos).
+     * @param pageSize Filas por página.
+     * @param cursor El de la página anterior (null = primera página).
+     * @return La página, con el cursor de la siguiente (null si es la última).
+     * @throws Exception Si ocurre un error de SQL o el cursor no es válido.
+     */
+    public Page<Medico> searchPage(String filtro, int pageSize, String cursor) throws Exception {
+        Cursor after = Cursor.decode(cursor);
+        boolean filtrar = filtro != null && !filtro.isEmpty();
+        List<String> condiciones = new ArrayList<>();
+        condiciones.add("u.tipo = 'Medico'");
+        if (filtrar && BUSQUEDA.condition("u.") != null) condiciones.add(BUSQUEDA.condition("u."));
+        if (after != null) condiciones.add("(u.nombre > ? OR (u.nombre = ? AND u.id > ?))");
+        String sql = "SELECT u.id, u.clave, u.nombre, u.tipo, md.especialidad " +
+                "FROM Usuario u INNER JOIN MedicoDetalle md ON u.id = md.id_medico " +
+                (filtrar ? BUSQUEDA.join(filtro, "u.id") : "") +
+                (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + " ") +
+                "ORDER BY u.nombre, u.id LIMIT ?";
+        List<Medico> filas = new ArrayList<>();
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            int i = 1;
+            if (filtrar) i = BUSQUEDA.bind(stm, i, filtro);
+            if (after != null) {
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.id);
+            }
+            stm.setInt(i, pageSize + 1); // Una fila de más: si llega, hay otra página
+            ResultSet rs = db.executeQuery(stm);
+            while (rs.next()) {
+                filas.add(from(rs));
+            }
+        } catch (SQLException ex) {
+            throw new Exception("Error al buscar médicos: " + ex.getMessage());
+        }
+        return Cursor.page(filas, pageSize, m -> Cursor.encode(m.getNombre(), m.getId()));
+    }
+
     // --- Método de Mapeo (Actualizado para leer del JOIN) ---
 
     /**
@@ -1,6 +1,8 @@
 package hospital.backend.data;
 
+import hospital.protocol.Page;
 import hospital.protocol.logic.Paciente; // Importa la entidad desde protocol
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -16,13 +18,15 @@ import java.util.Date; // Necesario para java.util.Date
 public class PacienteDao {
 
     Database db = Database.getInstance(); // Conexión a la BD
+    // Filtro por cédula o nombre con los índices de búsqueda (ver TextSearch)
+    private static final TextSearch BUSQUEDA = new TextSearch("Paciente", "id", "nombre");
 
     // --- Métodos CRUD ---
 
     public void create(Paciente p) throws Exception {
         String sql = "INSERT INTO Paciente (id, nombre, fechaNacimiento, telefono) VALUES (?, ?, ?, ?)";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, p.getId());
             stm.setString(2, p.getNombre());
             // Manejo especial para fechas que pueden ser null
@@ -45,8 +49,8 @@ public class PacienteDao {
 
     public Paciente read(String id) throws Exception {
         String sql = "SELECT * FROM Paciente WHERE id = ?";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);
             ResultSet rs = db.executeQuery(stm);
             if (rs.next()) {
@@ -61,8 +65,8 @@ public class PacienteDao {
 
     public void update(Paciente p) throws Exception {
         String sql = "UPDATE Paciente SET nombre = ?, fechaNacimiento = ?, telefono = ? WHERE id = ?";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, p.getNombre());
             if (p.getFechaNacimiento() != null) {
                 stm.setDate(2, new java.sql.Date(p.getFechaNacimiento().getTime()));
@@ -83,8 +87,8 @@ public class PacienteDao {
 
     public void delete(String id) throws Exception {
         String sql = "DELETE FROM Paciente WHERE id = ?";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);
             int count = db.executeUpdate(stm);
             if (count == 0) {
@@ -101,11 +105,8 @@ public class PacienteDao {
         List<Paciente> resultado = new ArrayList<>();
         String sql = "SELECT * FROM Paciente ORDER BY nombre";
         try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            ResultSet rs = db.executeQuery(stm);
-            while (rs.next()) {
-                resultado.add(from(rs));
-            }
+            // En streaming: el driver no guarda su propia copia del resultado además de la lista
+            db.stream(sql, null, rs -> resultado.add(from(rs)));
             return resultado;
         } catch (SQLException ex) {
             throw new Exception("Error al obtener todos los pacientes: " + ex.getMessage());
@@ -114,12 +115,12 @@ public class PacienteDao {
 
     public List<Paciente> search(String filtro) throws Exception {
         List<Paciente> resultado = new ArrayList<>();
-        String sql = "SELECT * FROM Paciente WHERE LOWER(id) LIKE ? OR LOWER(nombre) LIKE ? ORDER BY nombre";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
-            String filtroLike = "%" + filtro.toLowerCase() + "%";
-            stm.setString(1, filtroLike);
-            stm.setString(2, filtroLike);
+        String condicion = BUSQUEDA.condition("");
+        String sql = "SELECT * FROM Paciente " + BUSQUEDA.join(filtro, "Paciente.id") +
+                (condicion == null ? "" : "WHERE " + condicion + " ") + "ORDER BY nombre";
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            BUSQUEDA.bind(stm, 1, filtro);
             ResultSet rs = db.executeQuery(stm);
             while (rs.next()) {
                 resultado.add(from(rs));
@@ -130,6 +131,45 @@ public class PacienteDao {
         }
     }
 
+    /**
+     * Una página de la búsqueda (o de todos, con el filtro vacío), ordenada por nombre y cédula.
+     * Paginación por clave: cada página sigue después de la última fila de la anterior, sin OFFSET.
+     * @param filtro Texto a buscar en cédula o nombre ("" = todos).
+     * @param pageSize Filas por página.
+     * @param cursor El de la página anterior (null = primera página).
+     * @return La página, con el cursor de la siguiente (null si es la última).
+     * @throws Exception Si ocurre un error de SQL o el cursor no es válido.
+     */
+    public Page<Paciente> searchPage(String filtro, int pageSize, String cursor) throws Exception {
+        Cursor after = Cursor.decode(cursor);
+        boolean filtrar = filtro != null && !filtro.isEmpty();
+        List<String> condiciones = new ArrayList<>();
+        if (filtrar && BUSQUEDA.condition("") != null) condiciones.add(BUSQUEDA.condition(""));
+        if (after != null) condiciones.add("(nombre > ? OR (nombre = ? AND id > ?))");
+        String sql = "SELECT * FROM Paciente " + (filtrar ? BUSQUEDA.join(filtro, "Paciente.id") : "") +
+                (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + " ") +
+                "ORDER BY nombre, id LIMIT ?";
+        List<Paciente> filas = new ArrayList<>();
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            int i = 1;
+            if (filtrar) i = BUSQUEDA.bind(stm, i, filtro);
+            if (after != null) {
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.key);
+                stm.setString(i++, after.id);
+            }
+            stm.setInt(i, pageSize + 1); // Una fila de más: si llega, hay otra página
+            ResultSet rs = db.executeQuery(stm);
+            while (rs.next()) {
+                filas.add(from(rs));
+            }
+        } catch (SQLException ex) {
+            throw new Exception("Error al buscar pacientes: " + ex.getMessage());
+        }
+        return Cursor.page(filas, pageSize, p -> Cursor.encode(p.getNombre(), p.getId()));
+    }
+
     // --- Método de Mapeo ---
 
     private Paciente from(ResultSet rs) throws SQLException {
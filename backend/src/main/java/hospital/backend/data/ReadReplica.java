@@ -0,0 +1,141 @@
+package hospital.backend.data;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Réplica de solo lectura de la BD, para las consultas que toleran datos un poco atrasados
+ * (búsquedas, listados, histórico y dashboard): así los reportes no compiten con las
+ * escrituras de las recetas en la primaria. Tiene su propio pool de conexiones.
+ *
+ * Política de atraso (propiedades del sistema):
+ *   db.replica.url              JDBC de la réplica; sin ella todo va a la primaria
+ *   db.replica.user/.password   credenciales (por defecto, las de la primaria)
+ *   db.replica.maxLagMs         atraso máximo aceptado; con más, las lecturas van a la primaria (5000)
+ *   db.replica.lagCheckMs       cada cuánto se mide el atraso (1000)
+ *   db.replica.lagQuery         consulta que da el atraso en segundos (SHOW REPLICA STATUS, o una
+ *                               que lo devuelva en la primera columna); vacía = no se mide y la
+ *                               réplica se considera al día (p. ej. una BD local que hace de réplica)
+ *   db.replica.readYourWritesMs tiempo que las lecturas de un cliente van a la primaria después
+ *                               de que escribe (ver ReplicaSession) (5000)
+ *
+ * Si la réplica no responde o se atrasa de más, las lecturas van a la primaria hasta que el
+ * monitor la vuelva a ver al día.
+ */
+final class ReadReplica {
+    static final String URL = System.getProperty("db.replica.url", "");
+    private static final long MAX_LAG_MS = Long.getLong("db.replica.maxLagMs", 5000);
+    private static final long LAG_CHECK_MS = Long.getLong("db.replica.lagCheckMs", 1000);
+    private static final String LAG_QUERY = System.getProperty("db.replica.lagQuery", "SHOW REPLICA STATUS");
+    private static final long READ_YOUR_WRITES_MS = Long.getLong("db.replica.readYourWritesMs", 5000);
+
+    private final ConnectionPool pool;
+    private final Thread monitor;
+    private volatile boolean usable = false; // Hasta la primera medición, a la primaria
+    private volatile long lagMs = -1;        // Último atraso medido (-1 = desconocido)
+    private volatile String reason = "sin medir"; // Por qué no se usa
+
+    // --- Métricas ---
+    private final AtomicLong reads = new AtomicLong();     // Lecturas que atendió la réplica
+    private final AtomicLong fallbacks = new AtomicLong(); // Lecturas que fueron a la primaria
+
+    ReadReplica(String user, String password) {
+        this.pool = new ConnectionPool(URL, user, password);
+        this.monitor = new Thread(this::monitor, "replica-lag");
+        this.monitor.setDaemon(true);
+        this.monitor.start();
+    }
+
+    /** Una conexión de la réplica, o null si la política manda leer de la primaria. */
+    Connection borrowIfFresh() {
+        if (!usable || ReplicaSession.wroteWithin(READ_YOUR_WRITES_MS)) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        try {
+            Connection connection = pool.borrow();
+            reads.incrementAndGet();
+            return connection;
+        } catch (SQLException e) {
+            markUnusable("no responde: " + e.getMessage());
+            fallbacks.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Mide el atraso cada LAG_CHECK_MS y decide si la réplica se usa
+    private void monitor() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (Connection connection = pool.borrow()) {
+                long lag = LAG_QUERY.isEmpty() ? 0 : measureLagMs(connection);
+                lagMs = lag;
+                if (lag > MAX_LAG_MS) {
+                    markUnusable("atraso de " + lag + " ms (máximo " + MAX_LAG_MS + ")");
+                } else if (!usable) {
+                    usable = true;
+                    System.out.println(">>> Réplica de lectura en uso (atraso " + lag + " ms)");
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Cualquier falla deja la réplica fuera de uso; el monitor sigue midiendo
+                lagMs = -1;
+                markUnusable(e.getMessage() != null ? e.getMessage() : e.toString());
+            }
+            try {
+                Thread.sleep(LAG_CHECK_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private long measureLagMs(Connection connection) throws SQLException {
+        try (Statement stm = connection.createStatement();
+             ResultSet rs = stm.executeQuery(LAG_QUERY)) {
+            if (!rs.next()) {
+                throw new SQLException("la consulta de atraso no devolvió filas (¿no es una réplica?)");
+            }
+            String seconds = rs.getString(lagColumn(rs));
+            if (seconds == null) {
+                throw new SQLException("la replicación está detenida");
+            }
+            return Math.round(Double.parseDouble(seconds) * 1000);
+        } catch (NumberFormatException e) {
+            throw new SQLException("atraso ilegible: " + e.getMessage());
+        }
+    }
+
+    // La columna del atraso en SHOW REPLICA/SLAVE STATUS, o la primera en una consulta propia
+    private static int lagColumn(ResultSet rs) {
+        for (String name : new String[]{"Seconds_Behind_Source", "Seconds_Behind_Master"}) {
+            try {
+                return rs.findColumn(name);
+            } catch (SQLException e) {
+                // No está: probar la siguiente
+            }
+        }
+        return 1;
+    }
+
+    private void markUnusable(String why) {
+        reason = why;
+        if (usable) {
+            usable = false;
+            System.err.println(">>> Réplica de lectura fuera de uso, las lecturas van a la primaria: " + why);
+        }
+    }
+
+    /** Estado, atraso y cuántas lecturas atendió. */
+    String getStats() {
+        return "réplica " + (usable ? "en uso" : "sin usar (" + reason + ")") + ", atraso "
+                + (lagMs < 0 ? "-" : lagMs + " ms") + ", " + reads.get() + " lecturas, "
+                + fallbacks.get() + " a la primaria; pool réplica: " + pool.getStats();
+    }
+
+    void close() {
+        monitor.interrupt();
+        pool.close();
+    }
+}
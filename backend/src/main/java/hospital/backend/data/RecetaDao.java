@@ -0,0 +1,439 @@
+package hospital.backend.data;
+
+import hospital.protocol.Page;
+import hospital.protocol.logic.*;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Data Access Object (DAO) para Receta.
+ * Interactúa con las tablas 'Receta' (encabezado) y 'LineaDetalle' (un medicamento por fila).
+ *
+ * Tablas esperadas:
+ *   Receta (codigo PK, id_paciente FK Paciente, id_medico FK Usuario,
+ *           fecha_confeccion, fecha_retiro, estado)
+ *   LineaDetalle (id PK autoincremental, codigo_receta FK Receta, codigo_medicamento FK Medicamento,
+ *                 cantidad, indicaciones, duracion_tratamiento)
+ */
+public class RecetaDao {
+
+    Database db = Database.getInstance();
+
+    // Líneas de detalle por cada executeBatch() al crear una receta (-Ddb.batchSize)
+    private static final int BATCH_SIZE = Integer.getInteger("db.batchSize", 50);
+
+    // Una fila por línea de detalle, con el paciente, el médico y el medicamento ya unidos.
+    // Las filas de una misma receta quedan juntas por el ORDER BY, así se arma la receta
+    // completa leyendo el ResultSet de corrido, sin consultas extra por cada receta.
+    private static final String SELECT_COMPLETA =
+            "SELECT r.codigo, r.fecha_confeccion, r.fecha_retiro, r.estado, " +
+            "p.id AS p_id, p.nombre AS p_nombre, p.fechaNacimiento, p.telefono, " +
+            "u.id AS m_id, u.nombre AS m_nombre, md.especialidad, " +
+            "l.cantidad, l.indicaciones, l.duracion_tratamiento, " +
+            "med.codigo AS med_codigo, med.nombre AS med_nombre, med.presentacion " +
+            "FROM Receta r " +
+            "INNER JOIN Paciente p ON p.id = r.id_paciente " +
+            "INNER JOIN Usuario u ON u.id = r.id_medico " +
+            "LEFT JOIN MedicoDetalle md ON md.id_medico = u.id " +
+            "LEFT JOIN LineaDetalle l ON l.codigo_receta = r.codigo " +
+            "LEFT JOIN Medicamento med ON med.codigo = l.codigo_medicamento ";
+    private static final String ORDEN = "ORDER BY r.fecha_confeccion DESC, r.codigo, l.id";
+
+    // --- Métodos CRUD ---
+
+    /**
+     * Obtiene el número más alto usado en los códigos de receta ("REC-07" -> 7).
+     * @return El número más alto, o 0 si no hay recetas.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public int findMaxRecetaNumero() throws Exception {
+        // CAST a DECIMAL y no a UNSIGNED: así también corre en la BD embebida (H2, ver DatabaseConfig)
+        String sql = "SELECT MAX(CAST(SUBSTRING(codigo, 5) AS DECIMAL(20, 0))) AS maximo FROM Receta";
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            ResultSet rs = db.executeQuery(stm);
+            return rs.next() ? rs.getInt("maximo") : 0; // MAX de una tabla vacía es NULL -> 0
+        } catch (SQLException ex) {
+            throw new Exception("Error al obtener el último número de receta: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Inserta una receta (encabezado) y todas sus líneas de detalle.
+     * Las líneas van en lotes (addBatch/executeBatch) de db.batchSize: con
+     * rewriteBatchedStatements el driver manda cada lote como un solo INSERT de varias filas.
+     * Para que sea atómico, llamarlo dentro de una UnitOfWork.
+     * @param r La receta completa (con código, fechas y estado ya asignados).
+     * @throws Exception Si ocurre un error de SQL o el código ya existe.
+     */
+    public void create(Receta r) throws Exception {
+        String sqlReceta = "INSERT INTO Receta (codigo, id_paciente, id_medico, fecha_confeccion, fecha_retiro, estado) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        String sqlLinea = "INSERT INTO LineaDetalle (codigo_receta, codigo_medicamento, cantidad, indicaciones, duracion_tratamiento) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        try (Connection cn = db.getConnection();
+             PreparedStatement stmReceta = cn.prepareStatement(sqlReceta);
+             PreparedStatement stmLinea = cn.prepareStatement(sqlLinea)) {
+            stmReceta.setString(1, r.getCodigo());
+            stmReceta.setString(2, r.getPacienteId());
+            stmReceta.setString(3, r.getMedicoId());
+            stmReceta.setTimestamp(4, toTimestamp(r.getFechaConfeccion()));
+            stmReceta.setTimestamp(5, toTimestamp(r.getFechaRetiro()));
+            stmReceta.setString(6, r.getEstado().name());
+            if (db.executeUpdate(stmReceta) == 0) {
+                throw new Exception("Receta no creada, 0 filas afectadas.");
+            }
+
+            int pendientes = 0;
+            for (LineaDetalle linea : r.getLineasDetalle()) {
+                stmLinea.setString(1, r.getCodigo());
+                stmLinea.setString(2, linea.getMedicamento().getCodigo());
+                stmLinea.setInt(3, linea.getCantidad());
+                stmLinea.setString(4, linea.getIndicaciones());
+                stmLinea.setInt(5, linea.getDuracionTratamiento() == null ? 0 : linea.getDuracionTratamiento());
+                stmLinea.addBatch();
+                if (++pendientes == BATCH_SIZE) {
+                    checkBatch(db.executeBatch(stmLinea));
+                    pendientes = 0;
+                }
+            }
+            if (pendientes > 0) {
+                checkBatch(db.executeBatch(stmLinea));
+            }
+        } catch (SQLException ex) {
+            throw new Exception("Error al crear la receta: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Cambia el estado de una receta.
+     * @param codigo El código de la receta.
+     * @param estado El nuevo estado.
+     * @throws Exception Si ocurre un error de SQL o la receta no existe.
+     */
+    public void updateEstado(String codigo, EstadoReceta estado) throws Exception {
+        String sql = "UPDATE Receta SET estado = ? WHERE codigo = ?";
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            stm.setString(1, estado.name());
+            stm.setString(2, codigo);
+            if (db.executeUpdate(stm) == 0) {
+                throw new Exception("Receta no actualizada, el código '" + codigo + "' no existe.");
+            }
+        } catch (SQLException ex) {
+            throw new Exception("Error al actualizar el estado de la receta: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Lee el estado actual de una receta y bloquea su fila hasta el fin de la transacción
+     * (SELECT ... FOR UPDATE), para cambiarlo sabiendo de qué estado viene.
+     * Llamarlo dentro de una UnitOfWork.
+     * @param codigo El código de la receta.
+     * @return El estado, o null si la receta no existe.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public EstadoReceta readEstadoForUpdate(String codigo) throws Exception {
+        String sql = "SELECT estado FROM Receta WHERE codigo = ? FOR UPDATE";
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            stm.setString(1, codigo);
+            ResultSet rs = db.executeQuery(stm);
+            return rs.next() ? EstadoReceta.valueOf(rs.getString("estado")) : null;
+        } catch (SQLException ex) {
+            throw new Exception("Error al leer el estado de la receta: " + ex.getMessage());
+        }
+    }
+
+    // --- Métodos de Búsqueda ---
+
+    /**
+     * Recetas pendientes de entregar (para la pantalla de Despacho), por código o paciente.
+     * @param filtro Texto a buscar en el código de la receta o en el ID/nombre del paciente.
+     * @return Lista de recetas completas.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public List<Receta> searchForDespacho(String filtro) throws Exception {
+        String sql = SELECT_COMPLETA +
+                "WHERE r.estado <> 'ENTREGADA' AND " +
+                "(LOWER(r.codigo) LIKE ? OR LOWER(p.id) LIKE ? OR LOWER(p.nombre) LIKE ?) " + ORDEN;
+        List<Receta> resultado = new ArrayList<>();
+        query(sql, filtro, 3, resultado::add);
+        return resultado;
+    }
+
+    /**
+     * Recetas para la pantalla de Histórico, por código, paciente, médico o estado.
+     * @param filtro Texto a buscar.
+     * @return Lista de recetas completas.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public List<Receta> searchForHistorico(String filtro) throws Exception {
+        String sql = SELECT_COMPLETA +
+                "WHERE LOWER(r.codigo) LIKE ? OR LOWER(p.nombre) LIKE ? OR LOWER(u.nombre) LIKE ? " +
+                "OR LOWER(r.estado) LIKE ? " + ORDEN;
+        List<Receta> resultado = new ArrayList<>();
+        query(sql, filtro, 4, resultado::add);
+        return resultado;
+    }
+
+    /**
+     * Una página del Histórico (o de todas, con el filtro vacío), en el mismo orden que
+     * searchForHistorico: de la más reciente a la más antigua, y por código.
+     * Paginación por clave: una subconsulta elige los códigos de la página (después de la
+     * última receta de la anterior, sin OFFSET) y la consulta completa trae sus líneas.
+     * @param filtro Texto a buscar ("" = todas).
+     * @param pageSize Recetas por página.
+     * @param cursor El de la página anterior (null = primera página).
+     * @return La página, con el cursor de la siguiente (null si es la última).
+     * @throws Exception Si ocurre un error de SQL o el cursor no es válido.
+     */
+    public Page<Receta> searchForHistoricoPage(String filtro, int pageSize, String cursor) throws Exception {
+        Cursor after = Cursor.decode(cursor);
+        boolean filtrar = filtro != null && !filtro.isEmpty();
+        List<String> condiciones = new ArrayList<>();
+        if (filtrar) {
+            condiciones.add("(LOWER(r2.codigo) LIKE ? OR LOWER(p2.nombre) LIKE ? OR LOWER(u2.nombre) LIKE ? " +
+                    "OR LOWER(r2.estado) LIKE ?)");
+        }
+        if (after != null) {
+            condiciones.add("(r2.fecha_confeccion < ? OR (r2.fecha_confeccion = ? AND r2.codigo > ?))");
+        }
+        String sql = SELECT_COMPLETA +
+                "INNER JOIN (SELECT r2.codigo FROM Receta r2 " +
+                "INNER JOIN Paciente p2 ON p2.id = r2.id_paciente " +
+                "INNER JOIN Usuario u2 ON u2.id = r2.id_medico " +
+                (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + " ") +
+                "ORDER BY r2.fecha_confeccion DESC, r2.codigo LIMIT ?) pagina ON pagina.codigo = r.codigo " +
+                ORDEN;
+        Timestamp despuesDe = after == null ? null : parseTimestamp(after.key);
+        List<Receta> filas = new ArrayList<>();
+        query(sql, stm -> {
+            int i = 1;
+            if (filtrar) {
+                String filtroLike = "%" + filtro.toLowerCase() + "%";
+                for (int k = 0; k < 4; k++) {
+                    stm.setString(i++, filtroLike);
+                }
+            }
+            if (after != null) {
+                stm.setTimestamp(i++, despuesDe);
+                stm.setTimestamp(i++, despuesDe);
+                stm.setString(i++, after.id);
+            }
+            stm.setInt(i, pageSize + 1); // Una receta de más: si llega, hay otra página
+        }, filas::add);
+        return Cursor.page(filas, pageSize,
+                r -> Cursor.encode(String.valueOf(r.getFechaConfeccion().getTime()), r.getCodigo()));
+    }
+
+    /**
+     * Devuelve todas las recetas completas (con paciente, médico y líneas de detalle).
+     * @return Lista de todas las recetas.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public List<Receta> findAll() throws Exception {
+        List<Receta> resultado = new ArrayList<>();
+        query(SELECT_COMPLETA + ORDEN, null, 0, resultado::add);
+        return resultado;
+    }
+
+    // --- Métodos para el Dashboard ---
+
+    /**
+     * Cuenta las recetas por estado. Todos los estados aparecen, aunque tengan 0.
+     * @return Un mapa {Estado -> Cantidad}.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public Map<String, Integer> contarRecetasPorEstado() throws Exception {
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        for (EstadoReceta estado : EstadoReceta.values()) {
+            resultado.put(estado.name(), 0);
+        }
+        String sql = "SELECT estado, COUNT(*) AS cantidad FROM Receta GROUP BY estado";
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            ResultSet rs = db.executeQuery(stm);
+            while (rs.next()) {
+                resultado.put(rs.getString("estado"), rs.getInt("cantidad"));
+            }
+            return resultado;
+        } catch (SQLException ex) {
+            throw new Exception("Error al contar recetas por estado: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Suma las cantidades prescritas por mes en un rango de fechas.
+     * @param desde Fecha de inicio (inclusive).
+     * @param hasta Fecha de fin (inclusive).
+     * @param nombresMedicamentos Si no está vacía, solo se cuentan esos medicamentos.
+     * @return Un mapa ordenado {"AAAA-MM" -> Cantidad}.
+     * @throws Exception Si ocurre un error de SQL.
+     */
+    public Map<String, Integer> contarMedicamentosPorMes(Date desde, Date hasta, List<String> nombresMedicamentos) throws Exception {
+        StringBuilder sql = new StringBuilder(
+                "SELECT YEAR(r.fecha_confeccion) AS anio, MONTH(r.fecha_confeccion) AS mes, SUM(l.cantidad) AS cantidad " +
+                "FROM Receta r " +
+                "INNER JOIN LineaDetalle l ON l.codigo_receta = r.codigo " +
+                "INNER JOIN Medicamento med ON med.codigo = l.codigo_medicamento " +
+                "WHERE r.fecha_confeccion >= ? AND r.fecha_confeccion < ? ");
+        boolean filtrarNombres = nombresMedicamentos != null && !nombresMedicamentos.isEmpty();
+        if (filtrarNombres) {
+            sql.append("AND med.nombre IN (");
+            for (int i = 0; i < nombresMedicamentos.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(") ");
+        }
+        sql.append("GROUP BY YEAR(r.fecha_confeccion), MONTH(r.fecha_confeccion)");
+
+        Map<String, Integer> resultado = new TreeMap<>(); // "AAAA-MM" ordena bien como texto
+        try (Connection cn = db.getReadConnection();
+             PreparedStatement stm = cn.prepareStatement(sql.toString())) {
+            stm.setTimestamp(1, toTimestamp(inicioDelDia(desde)));
+            stm.setTimestamp(2, toTimestamp(inicioDelDiaSiguiente(hasta)));
+            if (filtrarNombres) {
+                for (int i = 0; i < nombresMedicamentos.size(); i++) {
+                    stm.setString(3 + i, nombresMedicamentos.get(i));
+                }
+            }
+            ResultSet rs = db.executeQuery(stm);
+            while (rs.next()) {
+                String mes = String.format("%04d-%02d", rs.getInt("anio"), rs.getInt("mes"));
+                resultado.put(mes, rs.getInt("cantidad"));
+            }
+            return resultado;
+        } catch (SQLException ex) {
+            throw new Exception("Error al contar medicamentos por mes: " + ex.getMessage());
+        }
+    }
+
+    // --- Métodos auxiliares ---
+
+    // La fecha de un cursor (milisegundos, como la escribe searchForHistoricoPage)
+    private static Timestamp parseTimestamp(String millis) throws Exception {
+        try {
+            return new Timestamp(Long.parseLong(millis));
+        } catch (NumberFormatException e) {
+            throw new Exception("Cursor de página inválido.");
+        }
+    }
+
+    // Con rewriteBatchedStatements el driver no sabe cuántas filas tocó cada línea
+    // (SUCCESS_NO_INFO); solo EXECUTE_FAILED indica una línea que no se insertó.
+    private static void checkBatch(int[] counts) throws Exception {
+        for (int count : counts) {
+            if (count == Statement.EXECUTE_FAILED || count == 0) {
+                throw new Exception("Línea de detalle no creada, 0 filas afectadas.");
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una consulta sobre SELECT_COMPLETA y arma las recetas a medida que avanza el
+     * ResultSet: cuando cambia el código, la receta anterior está completa y se entrega.
+     * @param filtro Texto para los parámetros LIKE (se usa en los primeros 'parametros' signos ?).
+     */
+    private void query(String sql, String filtro, int parametros, RowHandler<Receta> handler) throws Exception {
+        String filtroLike = "%" + (filtro == null ? "" : filtro.toLowerCase()) + "%";
+        query(sql, stm -> {
+            for (int i = 1; i <= parametros; i++) {
+                stm.setString(i, filtroLike);
+            }
+        }, handler);
+    }
+
+    // En streaming (Database.stream): las filas no se acumulan en el driver, solo la receta en curso
+    private void query(String sql, Database.Parameters parametros, RowHandler<Receta> handler) throws Exception {
+        Receta[] actual = new Receta[1];
+        try {
+            db.stream(sql, parametros, rs -> {
+                String codigo = rs.getString("codigo");
+                if (actual[0] == null || !actual[0].getCodigo().equals(codigo)) {
+                    if (actual[0] != null) handler.row(actual[0]);
+                    actual[0] = from(rs);
+                }
+                if (rs.getString("med_codigo") != null) { // LEFT JOIN: una receta sin líneas trae NULL
+                    actual[0].getLineasDetalle().add(lineaFrom(rs));
+                }
+            });
+            if (actual[0] != null) handler.row(actual[0]);
+        } catch (SQLException ex) {
+            throw new Exception("Error al buscar recetas: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Convierte el encabezado de una fila (receta + paciente + médico) a un objeto Receta.
+     * @param rs El ResultSet posicionado en la primera fila de la receta.
+     * @return La Receta, todavía sin líneas de detalle.
+     * @throws SQLException Si hay un error al leer las columnas.
+     */
+    private Receta from(ResultSet rs) throws SQLException {
+        Receta r = new Receta();
+        r.setCodigo(rs.getString("codigo"));
+        r.setFechaConfeccion(toDate(rs.getTimestamp("fecha_confeccion")));
+        r.setFechaRetiro(toDate(rs.getTimestamp("fecha_retiro")));
+        r.setEstado(EstadoReceta.valueOf(rs.getString("estado")));
+
+        Paciente p = new Paciente();
+        p.setId(rs.getString("p_id"));
+        p.setNombre(rs.getString("p_nombre"));
+        p.setFechaNacimiento(rs.getDate("fechaNacimiento"));
+        p.setTelefono(rs.getString("telefono"));
+        r.setPaciente(p);
+        r.setPacienteId(p.getId());
+
+        Medico m = new Medico();
+        m.setId(rs.getString("m_id"));
+        m.setNombre(rs.getString("m_nombre"));
+        m.setEspecialidad(rs.getString("especialidad"));
+        m.setClave(""); // La clave del médico no viaja con la receta
+        r.setMedico(m);
+        r.setMedicoId(m.getId());
+        return r;
+    }
+
+    private LineaDetalle lineaFrom(ResultSet rs) throws SQLException {
+        Medicamento med = new Medicamento(rs.getString("med_codigo"), rs.getString("med_nombre"), rs.getString("presentacion"));
+        return new LineaDetalle(med, rs.getInt("cantidad"), rs.getString("indicaciones"), rs.getInt("duracion_tratamiento"));
+    }
+
+    // Las fechas viajan como java.util.Date (el Codec las manda sin serialización de Java)
+    private static Date toDate(Timestamp ts) {
+        return ts == null ? null : new Date(ts.getTime());
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+
+    private static Date inicioDelDia(Date date) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(date);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTime();
+    }
+
+    private static Date inicioDelDiaSiguiente(Date date) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTime(inicioDelDia(date));
+        cal.add(Calendar.DAY_OF_MONTH, 1);
+        return cal.getTime();
+    }
+}
@@ -0,0 +1,40 @@
+package hospital.backend.data;
+
+/**
+ * La sesión de un cliente frente a la réplica de lectura: después de que el cliente escribe,
+ * sus lecturas van a la primaria por un rato (db.replica.readYourWritesMs), para que vea lo
+ * que acaba de escribir aunque la réplica todavía no lo tenga.
+ *
+ * El Worker tiene una por conexión y la asocia al hilo de cada petición (bind/unbind).
+ * Sin sesión asociada (p. ej. al iniciar el servidor) no se registran escrituras.
+ */
+public class ReplicaSession {
+    private static final ThreadLocal<ReplicaSession> current = new ThreadLocal<>();
+
+    // Las peticiones de un mismo cliente corren en paralelo: volatile
+    private volatile boolean wrote = false;
+    private volatile long lastWriteNanos;
+
+    public static void bind(ReplicaSession session) {
+        current.set(session);
+    }
+
+    public static void unbind() {
+        current.remove();
+    }
+
+    // Database la llama en cada escritura
+    static void recordWrite() {
+        ReplicaSession session = current.get();
+        if (session != null) {
+            session.lastWriteNanos = System.nanoTime();
+            session.wrote = true;
+        }
+    }
+
+    // Si el cliente de esta petición escribió hace menos de 'ms' milisegundos
+    static boolean wroteWithin(long ms) {
+        ReplicaSession session = current.get();
+        return session != null && session.wrote && System.nanoTime() - session.lastWriteNanos < ms * 1_000_000L;
+    }
+}
@@ -0,0 +1,14 @@
+package hospital.backend.data;
+
+/**
+ * Recibe, una por una, las entidades que un DAO va armando mientras lee el ResultSet
+ * (p. ej. RecetaDao entrega cada receta cuando ya leyó todas sus líneas).
+ * @param <T> La entidad que produce cada fila.
+ */
+public interface RowHandler<T> {
+    /**
+     * @param row La entidad leída.
+     * @throws Exception Si no se puede procesar; el DAO deja de leer y la propaga.
+     */
+    void row(T row) throws Exception;
+}
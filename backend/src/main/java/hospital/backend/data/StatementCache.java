@@ -0,0 +1,169 @@
+package hospital.backend.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de sentencias preparadas de UNA conexión del pool, por texto SQL (LRU, tamaño acotado).
+ *
+ * El DAO recibe un proxy de la sentencia: su close() cierra el ResultSet que haya quedado
+ * abierto y limpia los parámetros, pero deja la sentencia preparada para la siguiente vez.
+ * Al salir de la caché (o cerrarse la conexión) sí se cierra la sentencia real.
+ *
+ * No necesita sincronización: una conexión la usa un solo hilo a la vez (el que la tiene prestada).
+ */
+class StatementCache {
+    // Contadores de todas las conexiones, para ver cuántas preparaciones se ahorran
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private final int capacity;
+    // Orden de acceso: la primera es la usada hace más tiempo
+    private final LinkedHashMap<String, Entry> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static class Entry {
+        final PreparedStatement statement;
+        boolean inUse = false;
+        boolean evicted = false; // Salió de la caché mientras estaba en uso: se cierra al devolverla
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    StatementCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /** La sentencia para ese SQL: la de la caché si está libre, o una recién preparada. */
+    PreparedStatement prepare(Connection raw, String sql) throws SQLException {
+        Entry entry = statements.get(sql);
+        if (entry != null && !entry.inUse) {
+            hits.incrementAndGet();
+            return checkout(entry);
+        }
+        misses.incrementAndGet();
+        PreparedStatement statement = raw.prepareStatement(sql);
+        if (entry != null || capacity <= 0) {
+            // El mismo SQL ya está abierto en esta conexión (o no hay caché): una aparte, sin guardar
+            return statement;
+        }
+        entry = new Entry(statement);
+        statements.put(sql, entry);
+        evictOverflow();
+        return checkout(entry);
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> it = statements.values().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            evictions.incrementAndGet();
+            if (eldest.inUse) {
+                eldest.evicted = true;
+            } else {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    // Entrega la sentencia envuelta: cada préstamo tiene su propio proxy (y su propio "cerrado")
+    private PreparedStatement checkout(Entry entry) {
+        entry.inUse = true;
+        ResultSet[] current = new ResultSet[1];
+        boolean[] closed = new boolean[1];
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!closed[0]) {
+                                closed[0] = true;
+                                giveBack(entry, current[0]);
+                            }
+                            return null;
+                        case "isClosed":
+                            return closed[0];
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            if (closed[0]) {
+                                throw new SQLException("La sentencia ya fue cerrada");
+                            }
+                            Object result;
+                            try {
+                                result = method.invoke(entry.statement, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                            if (result instanceof ResultSet) {
+                                current[0] = (ResultSet) result;
+                            }
+                            return result;
+                    }
+                });
+    }
+
+    // El DAO cerró la sentencia: se deja lista para el próximo que la pida
+    private void giveBack(Entry entry, ResultSet open) {
+        entry.inUse = false;
+        try {
+            if (open != null) open.close();
+            if (entry.evicted) {
+                entry.statement.close();
+                return;
+            }
+            entry.statement.clearParameters();
+            entry.statement.clearBatch();
+        } catch (SQLException e) {
+            // La sentencia quedó en mal estado: fuera de la caché
+            statements.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+    }
+
+    /**
+     * La conexión vuelve al pool: las sentencias que el préstamo dejó sin cerrar se descartan
+     * (sus ResultSet podrían seguir abiertos). Devuelve cuántas había.
+     */
+    int releaseLeftovers() {
+        List<Entry> leftovers = new ArrayList<>();
+        for (Entry entry : statements.values()) {
+            if (entry.inUse) leftovers.add(entry);
+        }
+        for (Entry entry : leftovers) {
+            statements.values().remove(entry);
+            closeQuietly(entry.statement);
+        }
+        return leftovers.size();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Ignorar errores al cerrar
+        }
+    }
+
+    /** Aciertos, fallos y descartes de todas las cachés, en una línea. */
+    static String getStats() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return "sentencias: " + h + " aciertos, " + misses.get() + " preparadas ("
+                + (total == 0 ? "-" : String.format("%.1f%%", 100.0 * h / total)) + " de aciertos), "
+                + evictions.get() + " desalojadas";
+    }
+}
@@ -0,0 +1,125 @@
+package hospital.backend.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * El filtro de texto de las búsquedas por clave (cédula o código) y nombre.
+ *
+ * Modo "fulltext": en lugar de LOWER(col) LIKE '%x%', que recorre toda la tabla, se usan los
+ * índices de HospitalBD.sql (paso 5; para una BD anterior, HospitalBD-migracion-busqueda.sql):
+ * - la clave se busca por prefijo (clave LIKE 'x%'), con la PRIMARY KEY;
+ * - el nombre, con el índice FULLTEXT ngram (encuentra el texto en cualquier parte del nombre);
+ *   un filtro más corto que un n-grama busca el nombre por prefijo, con el índice sobre nombre.
+ * Las dos búsquedas van en un UNION dentro de un JOIN: con OR, MySQL no podría usar los dos índices.
+ * No hace falta LOWER(): la intercalación de las tablas (_ci) ya ignora mayúsculas.
+ *
+ * Modo "like": la búsqueda de siempre, para bases sin esos índices.
+ *
+ * Modo "auto" (db.search.mode, por defecto en MySQL): fulltext en cada tabla que tenga su índice
+ * FULLTEXT (se mira una vez, en information_schema); like, con un aviso, en las que no.
+ */
+final class TextSearch {
+    // La BD embebida (H2) no tiene índices FULLTEXT ni MATCH ... AGAINST: por defecto, modo like
+    private static final String MODE =
+            System.getProperty("db.search.mode", DatabaseConfig.EMBEDDED ? "like" : "auto").toLowerCase();
+    // Debe coincidir con ngram_token_size de MySQL (por defecto 2)
+    private static final int NGRAM_TOKEN_SIZE = Integer.getInteger("db.search.ngramTokenSize", 2);
+
+    private final String table;
+    private final String keyColumn;
+    private final String nameColumn;
+    private final boolean indexed; // Modo fulltext en esta tabla
+
+    TextSearch(String table, String keyColumn, String nameColumn) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.nameColumn = nameColumn;
+        this.indexed = MODE.equals("fulltext") || (MODE.equals("auto") && hasFullTextIndex());
+    }
+
+    // Si la columna del nombre tiene un índice FULLTEXT en la BD actual. Sin él, MATCH ... AGAINST
+    // falla ("Can't find FULLTEXT index"): mejor buscar con LIKE y avisar.
+    private boolean hasFullTextIndex() {
+        String sql = "SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND LOWER(TABLE_NAME) = LOWER(?) " +
+                "AND COLUMN_NAME = ? AND INDEX_TYPE = 'FULLTEXT'";
+        try (Connection cn = Database.getInstance().getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
+            stm.setString(1, table);
+            stm.setString(2, nameColumn);
+            ResultSet rs = stm.executeQuery();
+            if (rs.next() && rs.getLong(1) > 0) {
+                return true;
+            }
+            System.err.println(">>> " + table + "." + nameColumn + " no tiene índice FULLTEXT: sus búsquedas usan LIKE"
+                    + " (ver HospitalBD-migracion-busqueda.sql)");
+        } catch (SQLException ex) {
+            System.err.println(">>> No se pudieron revisar los índices de " + table + ", sus búsquedas usan LIKE: "
+                    + ex.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * El JOIN que deja solo las filas que coinciden con el filtro, o "" en modo like
+     * (o con el filtro vacío). Va después del FROM (y sus JOIN) de la consulta.
+     * @param outerKey La columna clave en la consulta de afuera (p. ej. "u.id").
+     */
+    String join(String filtro, String outerKey) {
+        if (!indexed || filtro.isEmpty()) return "";
+        return "INNER JOIN (SELECT " + keyColumn + " AS clave_coincide FROM " + table +
+                " WHERE " + keyColumn + " LIKE ? UNION SELECT " + keyColumn + " FROM " + table +
+                " WHERE " + nameCondition(filtro) + ") coincide ON coincide.clave_coincide = " + outerKey + " ";
+    }
+
+    /**
+     * La condición del filtro para el WHERE en modo like, o null en modo indexado (va en el JOIN).
+     * @param alias El prefijo de las columnas en la consulta ("" o p. ej. "u.").
+     */
+    String condition(String alias) {
+        if (indexed) return null;
+        return "(LOWER(" + alias + keyColumn + ") LIKE ? OR LOWER(" + alias + nameColumn + ") LIKE ?)";
+    }
+
+    /**
+     * Asigna los dos parámetros del filtro desde la posición i (antes que los del WHERE en
+     * los dos modos: el JOIN va antes del WHERE y la condición es la primera).
+     * @return La posición del siguiente parámetro.
+     */
+    int bind(PreparedStatement stm, int i, String filtro) throws SQLException {
+        if (!indexed) {
+            String filtroLike = "%" + filtro.toLowerCase() + "%";
+            stm.setString(i++, filtroLike);
+            stm.setString(i++, filtroLike);
+            return i;
+        }
+        if (filtro.isEmpty()) return i; // Sin JOIN: no hay parámetros
+        stm.setString(i++, prefix(filtro));
+        stm.setString(i++, useFullText(filtro) ? phrase(filtro) : prefix(filtro));
+        return i;
+    }
+
+    private String nameCondition(String filtro) {
+        return useFullText(filtro)
+                ? "MATCH(" + nameColumn + ") AGAINST (? IN BOOLEAN MODE)"
+                : nameColumn + " LIKE ?";
+    }
+
+    // Con menos letras que un n-grama el índice FULLTEXT no encuentra nada
+    private static boolean useFullText(String filtro) {
+        return filtro.replace("\"", "").trim().length() >= NGRAM_TOKEN_SIZE;
+    }
+
+    // 'x%' con los comodines del filtro escapados
+    private static String prefix(String filtro) {
+        return filtro.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    // Frase exacta: los n-gramas del filtro seguidos (sin operadores del modo booleano)
+    private static String phrase(String filtro) {
+        return "\"" + filtro.replace("\"", "").trim() + "\"";
+    }
+}
@@ -0,0 +1,164 @@
+package hospital.backend.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unidad de trabajo: varias llamadas de DAO que se confirman juntas o no se aplican.
+ *
+ * Uso desde el Service:
+ * <pre>
+ *     try (UnitOfWork uow = UnitOfWork.begin()) {
+ *         dao1.create(...);
+ *         dao2.update(...);
+ *         uow.commit();
+ *     } // Si no se llegó a commit() (una excepción), se deshace todo
+ * </pre>
+ *
+ * begin() toma una conexión del pool y la asocia al hilo: mientras la unidad esté abierta,
+ * Database.getConnection() devuelve esa conexión a cualquier DAO. Al cerrarla se devuelve al pool.
+ *
+ * Si ya hay una unidad abierta en el hilo, begin() devuelve una interna que se suma a ella:
+ * su commit() no confirma nada (lo hace la de afuera) y, si se cierra sin commit(), la de
+ * afuera queda marcada para deshacerse.
+ *
+ * afterCommit() deja para después del commit lo que no es de la BD (índices, cachés): si la
+ * unidad se deshace, no se aplica. afterCompletion() corre al cerrar, se haya confirmado o no.
+ */
+public class UnitOfWork implements AutoCloseable {
+    // La unidad de más afuera abierta en cada hilo
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private final Connection connection; // Solo en la de más afuera
+    private final UnitOfWork outer;      // null si esta es la de más afuera
+    private boolean committed = false;
+    private boolean closed = false;
+    private boolean rollbackOnly = false; // Una unidad interna falló
+    private final List<Runnable> afterCommit = new ArrayList<>(); // Solo en la de más afuera
+    private final List<Runnable> afterCompletion = new ArrayList<>(); // Solo en la de más afuera
+
+    private UnitOfWork(Connection connection, UnitOfWork outer) {
+        this.connection = connection;
+        this.outer = outer;
+    }
+
+    /**
+     * Abre una unidad de trabajo (o se suma a la que ya está abierta en este hilo).
+     * @throws SQLException Si no se pudo obtener una conexión del pool.
+     */
+    public static UnitOfWork begin() throws SQLException {
+        UnitOfWork active = current.get();
+        if (active != null) {
+            return new UnitOfWork(null, active);
+        }
+        Connection connection = Database.getInstance().borrow();
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        UnitOfWork unit = new UnitOfWork(connection, null);
+        current.set(unit);
+        return unit;
+    }
+
+    /**
+     * Ejecuta la acción cuando se confirme la unidad abierta en este hilo (si se deshace, no se
+     * ejecuta), o enseguida si no hay ninguna unidad abierta.
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork unit = current.get();
+        if (unit == null) {
+            action.run();
+        } else {
+            unit.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Ejecuta la acción cuando se cierre la unidad abierta en este hilo, se haya confirmado o
+     * deshecho (después de las de afterCommit), o enseguida si no hay ninguna unidad abierta.
+     */
+    public static void afterCompletion(Runnable action) {
+        UnitOfWork unit = current.get();
+        if (unit == null) {
+            action.run();
+        } else {
+            unit.afterCompletion.add(action);
+        }
+    }
+
+    /**
+     * Si hay una unidad abierta en este hilo: lo que se lee en ella puede no estar confirmado
+     * todavía, así que no debe quedar en una caché.
+     */
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    // La conexión de la unidad abierta en este hilo, o null si no hay ninguna
+    static Connection currentConnection() {
+        UnitOfWork unit = current.get();
+        return unit == null ? null : unit.connection;
+    }
+
+    /**
+     * Confirma la unidad (un solo commit para todas las escrituras).
+     * @throws SQLException Si el commit falla o una unidad interna ya había fallado
+     *                      (en ese caso se deshace todo al cerrar).
+     */
+    public void commit() throws SQLException {
+        if (closed) {
+            throw new SQLException("La unidad de trabajo ya está cerrada");
+        }
+        if (outer != null) {
+            committed = true; // La confirma la de afuera
+            return;
+        }
+        if (rollbackOnly) {
+            throw new SQLException("Una parte de la unidad de trabajo falló; se deshace completa");
+        }
+        connection.commit();
+        committed = true;
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // Lo de la BD ya quedó confirmado: solo se avisa
+                System.err.println(">>> UnitOfWork: falló una acción posterior al commit: " + e);
+            }
+        }
+        afterCommit.clear();
+    }
+
+    /** Deshace lo que no se confirmó y devuelve la conexión al pool. */
+    @Override
+    public void close() throws SQLException {
+        if (closed) return;
+        closed = true;
+        if (outer != null) {
+            if (!committed) outer.rollbackOnly = true;
+            return;
+        }
+        current.remove();
+        try {
+            if (!committed) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(true);
+        } finally {
+            connection.close(); // Vuelve al pool (si quedó a medias, el pool la deshace)
+            for (Runnable action : afterCompletion) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    System.err.println(">>> UnitOfWork: falló una acción posterior al cierre: " + e);
+                }
+            }
+            afterCompletion.clear();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package hospital.backend.data;
 
 import hospital.protocol.logic.Usuario;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -23,8 +24,8 @@ public class UsuarioDao {
 
     public Usuario readById(String id) throws Exception {
         String sql = "SELECT * FROM Usuario WHERE id = ?"; // Busca solo por ID
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);
             ResultSet rs = db.executeQuery(stm);
             if (rs.next()) {
@@ -40,9 +41,9 @@ public class UsuarioDao {
         // 1. Sentencia SQL para la consulta
         String sql = "SELECT * FROM Usuario WHERE id = ? AND clave = ?";
 
-        try {
-            // 2. Preparar la consulta
-            PreparedStatement stm = db.prepareStatement(sql);
+        // 2. Pedir una conexión del pool y preparar la consulta (ambas se cierran al salir)
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, id);       // Asigna el primer '?' con el id
             stm.setString(2, clave);    // Asigna el segundo '?' con la clave
 
@@ -71,8 +72,8 @@ public class UsuarioDao {
      */
     public void updatePassword(String id, String nuevaClave) throws Exception {
         String sql = "UPDATE Usuario SET clave = ? WHERE id = ?";
-        try {
-            PreparedStatement stm = db.prepareStatement(sql);
+        try (Connection cn = db.getConnection();
+             PreparedStatement stm = cn.prepareStatement(sql)) {
             stm.setString(1, nuevaClave); // Nueva clave
             stm.setString(2, id);         // ID del usuario a actualizar
 
@@ -0,0 +1,147 @@
+package hospital.backend.logic;
+
+import hospital.backend.data.UnitOfWork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria de un catálogo completo (p. ej. los medicamentos), para las pantallas que
+ * piden todo el catálogo aunque cambie pocas veces: se carga de la BD la primera vez que se
+ * pide y se sirve de memoria hasta que un create/update/delete la invalida.
+ *
+ * Versionada: invalidate() solo incrementa la versión (una operación atómica) y el contenido
+ * cargado con una versión anterior deja de servirse. Así una carga que estaba en curso
+ * durante una escritura no deja datos viejos guardados: vale para una versión que ya pasó.
+ *
+ * Las lecturas dentro de una UnitOfWork abierta van siempre a la BD y no se guardan: pueden
+ * ver escrituras que todavía no se confirman (y que podrían deshacerse).
+ * Las entidades devueltas son las de la caché: no se deben modificar.
+ * @param <T> La entidad del catálogo.
+ */
+public class CatalogCache<T> {
+
+    // Lee el catálogo completo de la BD
+    public interface Loader<T> {
+        List<T> load() throws Exception;
+    }
+
+    // Lee una sola entidad de la BD (null si no existe), para los pedidos dentro de una UnitOfWork
+    public interface Reader<T> {
+        T read(String key) throws Exception;
+    }
+
+    // Contenido cargado con una versión del catálogo (no cambia después de armarse)
+    private static final class Snapshot<T> {
+        final long version;
+        final List<T> values;
+        final Map<String, T> byKey;
+
+        Snapshot(long version, List<T> values, Function<T, String> keyOf) {
+            this.version = version;
+            this.values = Collections.unmodifiableList(values);
+            this.byKey = new HashMap<>();
+            for (T value : values) {
+                byKey.put(keyOf.apply(value), value);
+            }
+        }
+    }
+
+    private final String nombre; // Para los mensajes
+    private final Function<T, String> keyOf;
+    private final Loader<T> loader;
+    private final Reader<T> reader;
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot<T> snapshot = null;
+    // Una sola carga a la vez: los demás esperan y usan lo que cargó la primera
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    // --- Métricas ---
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();       // Pedidos que tuvieron que cargar
+    private final AtomicLong bypasses = new AtomicLong();     // Pedidos dentro de una UnitOfWork
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong loadNanos = new AtomicLong();    // Tiempo total cargando
+    private volatile long lastLoadMs = -1;
+
+    public CatalogCache(String nombre, Function<T, String> keyOf, Loader<T> loader, Reader<T> reader) {
+        this.nombre = nombre;
+        this.keyOf = keyOf;
+        this.loader = loader;
+        this.reader = reader;
+    }
+
+    /** Todo el catálogo (una lista nueva, en el orden en que lo devuelve el Loader). */
+    public List<T> getAll() throws Exception {
+        if (UnitOfWork.isActive()) {
+            bypasses.incrementAndGet();
+            return loader.load();
+        }
+        return new ArrayList<>(current().values);
+    }
+
+    /** La entidad con esa clave, o null si no existe. */
+    public T get(String key) throws Exception {
+        if (UnitOfWork.isActive()) {
+            bypasses.incrementAndGet();
+            return reader.read(key);
+        }
+        return current().byKey.get(key);
+    }
+
+    /** Descarta el contenido: el próximo pedido vuelve a cargar de la BD. */
+    public void invalidate() {
+        version.incrementAndGet();
+        invalidations.incrementAndGet();
+    }
+
+    // El contenido de la versión actual, cargándolo si hace falta
+    private Snapshot<T> current() throws Exception {
+        Snapshot<T> s = snapshot;
+        if (s != null && s.version == version.get()) {
+            hits.incrementAndGet();
+            return s;
+        }
+        loadLock.lock();
+        try {
+            s = snapshot;
+            long v = version.get();
+            if (s != null && s.version == v) {
+                hits.incrementAndGet(); // Lo cargó otro hilo mientras se esperaba
+                return s;
+            }
+            misses.incrementAndGet();
+            long inicio = System.nanoTime();
+            // Si se invalida durante la carga, este contenido queda con la versión vieja y no se sirve más
+            s = new Snapshot<>(v, new ArrayList<>(loader.load()), keyOf);
+            long nanos = System.nanoTime() - inicio;
+            loadNanos.addAndGet(nanos);
+            lastLoadMs = nanos / 1_000_000;
+            snapshot = s;
+            return s;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /** Tamaño, versión, aciertos/fallos y tiempos de carga. */
+    public String getStats() {
+        Snapshot<T> s = snapshot;
+        long h = hits.get();
+        long m = misses.get();
+        boolean vigente = s != null && s.version == version.get();
+        return nombre + ": " + (vigente ? s.values.size() + " en memoria" : "sin cargar")
+                + ", versión " + version.get() + ", " + h + " aciertos, " + m + " cargas"
+                + (h + m == 0 ? "" : String.format(" (%.1f%% aciertos)", 100.0 * h / (h + m)))
+                + ", " + bypasses.get() + " en transacción, " + invalidations.get() + " invalidaciones"
+                + ", carga promedio " + (m == 0 ? "-" : loadNanos.get() / m / 1_000_000 + " ms")
+                + ", última " + (lastLoadMs < 0 ? "-" : lastLoadMs + " ms");
+    }
+}
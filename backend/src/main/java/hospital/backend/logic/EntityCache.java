@@ -0,0 +1,140 @@
+package hospital.backend.logic;
+
+import hospital.backend.data.UnitOfWork;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché de entidades por clave (pacientes, médicos, farmaceutas) para las lecturas por
+ * PRIMARY KEY que se repiten (*_READ, el segundo paso de LOGIN): con tamaño máximo
+ * (se descarta la menos usada, LRU) y vencimiento (TTL) por si la BD cambia por otro lado.
+ *
+ * El Service la invalida en cada update/delete (después del commit). Una lectura que estaba en
+ * curso durante una invalidación no se guarda: podría traer el valor de antes. Igual que
+ * CatalogCache, dentro de una UnitOfWork abierta no se usa (puede ver datos sin confirmar).
+ * No se guardan los "no existe". Las entidades devueltas son las de la caché: no modificarlas.
+ *
+ * Propiedades del sistema (las mismas para cada tipo de entidad):
+ *   server.cache.entities.maxSize     entradas por tipo (1000)
+ *   server.cache.entities.ttlSeconds  vencimiento de cada entrada (300)
+ * @param <T> La entidad.
+ */
+public class EntityCache<T> {
+    private static final int MAX_SIZE = Integer.getInteger("server.cache.entities.maxSize", 1000);
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("server.cache.entities.ttlSeconds", 300));
+
+    // Lee la entidad de la BD (null si no existe)
+    public interface Loader<T> {
+        T load(String key) throws Exception;
+    }
+
+    private static final class Entry<T> {
+        final T value;
+        final long loadedNanos = System.nanoTime();
+
+        Entry(T value) {
+            this.value = value;
+        }
+    }
+
+    private final String nombre; // Para las estadísticas
+    private final Loader<T> loader;
+
+    // LinkedHashMap en orden de acceso: el primero es el menos usado. get() también lo modifica,
+    // así que todo acceso va con el lock (ReentrantLock, por los hilos virtuales)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+            if (size() > MAX_SIZE) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    // Cambia en cada invalidación: una carga que empezó antes no se guarda
+    private long generation = 0;
+
+    // --- Métricas ---
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public EntityCache(String nombre, Loader<T> loader) {
+        this.nombre = nombre;
+        this.loader = loader;
+    }
+
+    /** La entidad con esa clave (de memoria o de la BD), o null si no existe. */
+    public T get(String key) throws Exception {
+        if (UnitOfWork.isActive()) {
+            return loader.load(key);
+        }
+        long generacion;
+        lock.lock();
+        try {
+            Entry<T> entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.loadedNanos <= TTL_NANOS) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+            generacion = generation;
+        } finally {
+            lock.unlock();
+        }
+        // La consulta va sin el lock: las demás claves se siguen sirviendo mientras tanto
+        misses.incrementAndGet();
+        T value = loader.load(key);
+        if (value != null) {
+            lock.lock();
+            try {
+                if (generacion == generation) {
+                    entries.put(key, new Entry<>(value));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    /** Olvida la entidad: la próxima lectura va a la BD. */
+    public void invalidate(String key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+            generation++;
+        } finally {
+            lock.unlock();
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /** Tamaño, aciertos/fallos, vencidas, descartadas por tamaño e invalidaciones. */
+    public String getStats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        long h = hits.get();
+        long m = misses.get();
+        return nombre + ": " + size + "/" + MAX_SIZE + " en memoria, " + h + " aciertos, " + m + " fallos"
+                + (h + m == 0 ? "" : String.format(" (%.1f%% aciertos)", 100.0 * h / (h + m)))
+                + ", " + expirations.get() + " vencidas, " + evictions.get() + " descartadas, "
+                + invalidations.get() + " invalidaciones";
+    }
+}
@@ -0,0 +1,132 @@
+package hospital.backend.logic;
+
+import hospital.protocol.logic.EstadoReceta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cuántas recetas hay en cada estado, en memoria: el gráfico de pastel del dashboard se
+ * responde sin el GROUP BY sobre toda la tabla Receta.
+ *
+ * Se cargan de la BD una vez (seed) y después el Service las ajusta en cada cambio ya
+ * confirmado: created() al crear una receta y transition() al cambiarle el estado.
+ * Cada tanto el Service las concilia con la BD (reconcile): si un cambio se aplicó mientras
+ * se contaba, esa conciliación se salta (los números de la BD ya podrían estar viejos) y
+ * queda para la siguiente.
+ *
+ * Un cambio se anota con pending() antes del commit y se da por cerrado con settled() al
+ * terminar su transacción (confirmada o no). Mientras haya alguno pendiente tampoco se
+ * concilia: la BD podría contarlo ya confirmado antes de que created()/transition() lo sume.
+ */
+public class EstadoCounters {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] counts = new long[EstadoReceta.values().length];
+    private volatile boolean ready = false;
+    private final AtomicLong changes = new AtomicLong(); // Ajustes aplicados (para reconcile)
+    private final AtomicLong pending = new AtomicLong(); // Cambios sin terminar su transacción
+
+    // --- Métricas ---
+    private final AtomicLong reconciles = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();  // Conciliaciones saltadas
+    private final AtomicLong drifts = new AtomicLong();   // Conciliaciones que encontraron diferencias
+
+    /** Si ya se cargaron (si no, el Service cuenta en la BD). */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Un número que cambia con cada ajuste: se toma antes de contar en la BD (ver reconcile). */
+    public long changeCount() {
+        return changes.get();
+    }
+
+    /** Un cambio que se va a confirmar: llamarlo antes del commit (ver settled). */
+    public void pending() {
+        pending.incrementAndGet();
+        changes.incrementAndGet();
+    }
+
+    /** La transacción de un cambio anotado con pending() terminó (después de created()/transition()). */
+    public void settled() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Reemplaza los contadores por los de la BD, si no hubo ajustes desde 'cambiosAntes'
+     * (tomado con changeCount() antes de la consulta) ni queda ninguno pendiente.
+     * @param desdeBD {Estado -> Cantidad}, como lo devuelve RecetaDao.contarRecetasPorEstado.
+     * @return false si se saltó porque hubo ajustes mientras se contaba.
+     */
+    public boolean reconcile(Map<String, Integer> desdeBD, long cambiosAntes) {
+        lock.lock();
+        try {
+            if (changes.get() != cambiosAntes || pending.get() > 0) {
+                skipped.incrementAndGet();
+                return false;
+            }
+            boolean diferente = false;
+            for (EstadoReceta estado : EstadoReceta.values()) {
+                long valor = desdeBD.getOrDefault(estado.name(), 0);
+                if (ready && counts[estado.ordinal()] != valor) {
+                    diferente = true;
+                }
+                counts[estado.ordinal()] = valor;
+            }
+            if (diferente) {
+                drifts.incrementAndGet();
+                System.err.println(">>> Contadores de recetas por estado corregidos desde la BD: " + desdeBD);
+            }
+            ready = true;
+            reconciles.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Una receta nueva, en su estado inicial. */
+    public void created(EstadoReceta estado) {
+        lock.lock();
+        try {
+            counts[estado.ordinal()]++;
+            changes.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Una receta pasó de un estado a otro. */
+    public void transition(EstadoReceta desde, EstadoReceta hacia) {
+        if (desde == hacia) return;
+        lock.lock();
+        try {
+            counts[desde.ordinal()]--;
+            counts[hacia.ordinal()]++;
+            changes.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** {Estado -> Cantidad} con todos los estados, en el orden de EstadoReceta. */
+    public Map<String, Integer> snapshot() {
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (EstadoReceta estado : EstadoReceta.values()) {
+                resultado.put(estado.name(), (int) counts[estado.ordinal()]);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return resultado;
+    }
+
+    public String getStats() {
+        return "recetas por estado: " + (ready ? snapshot() : "sin cargar") + ", " + reconciles.get()
+                + " conciliaciones (" + drifts.get() + " con diferencias, " + skipped.get() + " saltadas)";
+    }
+}
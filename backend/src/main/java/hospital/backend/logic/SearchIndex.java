@@ -0,0 +1,260 @@
+package hospital.backend.logic;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda en memoria por trigramas, para las búsquedas que se hacen en cada tecla
+ * (sin ir a la BD). Índice invertido: para cada secuencia de 3 letras, las claves de las
+ * entidades que la tienen en alguno de sus campos.
+ *
+ * Un filtro de 3 o más letras solo revisa las entidades que tienen todos sus trigramas;
+ * uno más corto revisa todas. Coincide igual que LIKE '%filtro%' (sin distinguir mayúsculas
+ * ni tildes) y los resultados se ordenan por relevancia:
+ * clave exacta, clave que empieza con el filtro, nombre que empieza con el filtro,
+ * una palabra del nombre que empieza con el filtro, y el filtro en cualquier parte.
+ * A igual relevancia, por nombre. Se devuelven solo los primeros 'limit'.
+ *
+ * El Service lo carga al iniciar y lo mantiene al día en cada create/update/delete.
+ * Lecturas concurrentes; las escrituras esperan (ReentrantReadWriteLock).
+ * @param <T> La entidad indexada.
+ */
+public class SearchIndex<T> {
+    private static final int GRAM = 3;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    // Relevancia (menor = mejor)
+    private static final int KEY_EXACT = 0;
+    private static final int KEY_PREFIX = 1;
+    private static final int NAME_PREFIX = 2;
+    private static final int WORD_PREFIX = 3;
+    private static final int CONTAINS = 4;
+    private static final int NO_MATCH = -1;
+
+    private final String nombre; // Para los mensajes
+    private final Function<T, String> keyOf;
+    private final List<Function<T, String>> fields; // Clave, nombre y los demás campos
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Entry<T>> entries = new HashMap<>();
+    private Map<String, Set<String>> postings = new HashMap<>(); // Trigrama -> claves
+    private volatile boolean ready = false;
+
+    private static final class Entry<T> {
+        final T value;
+        final String[] texts; // Campos normalizados: [0] clave, [1] nombre, ...
+        final Set<String> grams;
+
+        Entry(T value, String[] texts) {
+            this.value = value;
+            this.texts = texts;
+            this.grams = new HashSet<>();
+            for (String text : texts) {
+                addGrams(text, grams);
+            }
+        }
+    }
+
+    // Una coincidencia y su relevancia, para ordenar
+    private static final class Match<T> {
+        final Entry<T> entry;
+        final int rank;
+
+        Match(Entry<T> entry, int rank) {
+            this.entry = entry;
+            this.rank = rank;
+        }
+    }
+
+    private static final Comparator<Match<?>> BEST_FIRST = Comparator
+            .<Match<?>>comparingInt(m -> m.rank)
+            .thenComparing(m -> m.entry.texts[1])
+            .thenComparing(m -> m.entry.texts[0]);
+
+    @SafeVarargs
+    public SearchIndex(String nombre, Function<T, String> keyOf, Function<T, String> nameOf,
+                       Function<T, String>... otros) {
+        this.nombre = nombre;
+        this.keyOf = keyOf;
+        this.fields = new ArrayList<>();
+        this.fields.add(keyOf);
+        this.fields.add(nameOf);
+        for (Function<T, String> otro : otros) {
+            this.fields.add(otro);
+        }
+    }
+
+    /** Si ya se cargó (si no, el Service busca en la BD). */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Reemplaza todo el contenido del índice (se arma aparte y se cambia de una vez). */
+    public void rebuild(Collection<T> values) {
+        long inicio = System.nanoTime();
+        Map<String, Entry<T>> nuevas = new HashMap<>();
+        Map<String, Set<String>> nuevosPostings = new HashMap<>();
+        for (T value : values) {
+            Entry<T> entry = entryOf(value);
+            nuevas.put(keyOf.apply(value), entry);
+            addPostings(nuevosPostings, keyOf.apply(value), entry);
+        }
+        lock.writeLock().lock();
+        try {
+            entries = nuevas;
+            postings = nuevosPostings;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println(">>> Índice de búsqueda de " + nombre + ": " + nuevas.size() + " entradas, "
+                + nuevosPostings.size() + " trigramas (" + (System.nanoTime() - inicio) / 1_000_000 + " ms)");
+    }
+
+    /** Agrega la entidad o reemplaza la que tenga la misma clave. */
+    public void put(T value) {
+        String key = keyOf.apply(value);
+        Entry<T> entry = entryOf(value);
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            entries.put(key, entry);
+            addPostings(postings, key, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Las entidades que contienen el filtro en alguno de sus campos, las más relevantes primero.
+     * @param filtro El texto a buscar ("" = las primeras por nombre).
+     * @param limit Máximo de resultados.
+     */
+    public List<T> search(String filtro, int limit) {
+        String q = normalize(filtro);
+        // Los 'limit' mejores: en la cabeza, el peor de los que van quedando
+        PriorityQueue<Match<T>> top = new PriorityQueue<>(BEST_FIRST.reversed());
+        lock.readLock().lock();
+        try {
+            for (Entry<T> entry : candidates(q)) {
+                int rank = q.isEmpty() ? CONTAINS : rank(entry, q);
+                if (rank == NO_MATCH) continue;
+                top.add(new Match<>(entry, rank));
+                if (top.size() > limit) top.poll();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Match<T>> ordenadas = new ArrayList<>(top);
+        ordenadas.sort(BEST_FIRST);
+        List<T> resultado = new ArrayList<>(ordenadas.size());
+        for (Match<T> m : ordenadas) {
+            resultado.add(m.entry.value);
+        }
+        return resultado;
+    }
+
+    // --- Internos (con el lock tomado) ---
+
+    // Las entradas que pueden coincidir: las que tienen todos los trigramas del filtro
+    private Collection<Entry<T>> candidates(String q) {
+        if (q.length() < GRAM) {
+            return entries.values(); // Sin trigramas: se revisan todas
+        }
+        Set<String> grams = new HashSet<>();
+        addGrams(q, grams);
+        List<Set<String>> listas = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<String> claves = postings.get(gram);
+            if (claves == null) return Collections.emptyList(); // Ninguna tiene ese trigrama
+            listas.add(claves);
+        }
+        listas.sort(Comparator.comparingInt(Set::size)); // Empezar por la más corta
+        List<Entry<T>> resultado = new ArrayList<>();
+        for (String key : listas.get(0)) {
+            boolean enTodas = true;
+            for (int i = 1; i < listas.size() && enTodas; i++) {
+                enTodas = listas.get(i).contains(key);
+            }
+            if (enTodas) resultado.add(entries.get(key));
+        }
+        return resultado;
+    }
+
+    private void removeLocked(String key) {
+        Entry<T> old = entries.remove(key);
+        if (old == null) return;
+        for (String gram : old.grams) {
+            Set<String> claves = postings.get(gram);
+            if (claves != null) {
+                claves.remove(key);
+                if (claves.isEmpty()) postings.remove(gram);
+            }
+        }
+    }
+
+    // --- Utilidades ---
+
+    private Entry<T> entryOf(T value) {
+        String[] texts = new String[fields.size()];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = normalize(fields.get(i).apply(value));
+        }
+        return new Entry<>(value, texts);
+    }
+
+    private static <T> void addPostings(Map<String, Set<String>> postings, String key, Entry<T> entry) {
+        for (String gram : entry.grams) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(key);
+        }
+    }
+
+    private static int rank(Entry<?> entry, String q) {
+        String key = entry.texts[0];
+        String name = entry.texts[1];
+        if (key.equals(q)) return KEY_EXACT;
+        if (key.startsWith(q)) return KEY_PREFIX;
+        if (name.startsWith(q)) return NAME_PREFIX;
+        if (name.contains(" " + q)) return WORD_PREFIX;
+        for (String text : entry.texts) {
+            if (text.contains(q)) return CONTAINS;
+        }
+        return NO_MATCH;
+    }
+
+    private static void addGrams(String text, Set<String> grams) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+    }
+
+    // Minúsculas, sin tildes y con un solo espacio entre palabras
+    static String normalize(String text) {
+        if (text == null) return "";
+        String sinTildes = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(sinTildes.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+}
@@ -1,10 +1,17 @@
 package hospital.backend.logic;
 
 import hospital.backend.data.*; // Importa todos los DAOs
+import hospital.protocol.Page;
 import hospital.protocol.logic.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
 import java.util.Date;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 // Ya no necesitamos UUID si usamos el contador secuencial
 // import java.util.UUID;
@@ -31,6 +38,56 @@ public class Service {
     private MedicoDao medicoDao;
     private FarmaceutaDao farmaceutaDao;
     private RecetaDao recetaDao;
+    private ConsumoMensualDao consumoMensualDao;
+
+    // Tamaño máximo de página que se acepta en las acciones paginadas
+    private static final int MAX_PAGE_SIZE = Integer.getInteger("server.page.maxSize", 500);
+
+    // --- ÍNDICES DE BÚSQUEDA EN MEMORIA ---
+    // Las búsquedas de los diálogos de prescripción (una por tecla) se responden sin ir a la BD
+    private static final boolean SEARCH_INDEX = Boolean.parseBoolean(System.getProperty("server.search.index", "true"));
+    private static final int SEARCH_TOP_K = Integer.getInteger("server.search.topK", 50);
+    private final SearchIndex<Paciente> pacienteIndex =
+            new SearchIndex<>("pacientes", Paciente::getId, Paciente::getNombre);
+    private final SearchIndex<Medicamento> medicamentoIndex =
+            new SearchIndex<>("medicamentos", Medicamento::getCodigo, Medicamento::getNombre, Medicamento::getPresentacion);
+
+    // --- CACHÉ DEL CATÁLOGO DE MEDICAMENTOS ---
+    // Dashboard, prescripción y administración piden el catálogo completo, que cambia pocas veces.
+    // Se carga en una unidad de trabajo: de la primaria, no de una réplica que podría estar atrasada
+    private static final boolean CATALOG_CACHE = Boolean.parseBoolean(System.getProperty("server.cache.medicamentos", "true"));
+    private final CatalogCache<Medicamento> medicamentoCatalog = new CatalogCache<>("catálogo de medicamentos",
+            Medicamento::getCodigo,
+            () -> Database.getInstance().inTransaction(() -> medicamentoDao.findAll()),
+            codigo -> medicamentoDao.read(codigo));
+
+    // --- CACHÉ DE ENTIDADES POR CLAVE ---
+    // Las lecturas por cédula (*_READ y el segundo paso de LOGIN) se repiten mucho: de memoria
+    private static final boolean ENTITY_CACHE = Boolean.parseBoolean(System.getProperty("server.cache.entities", "true"));
+    private final EntityCache<Paciente> pacienteCache = new EntityCache<>("pacientes", id -> pacienteDao.read(id));
+    private final EntityCache<Medico> medicoCache = new EntityCache<>("médicos", id -> medicoDao.read(id));
+    private final EntityCache<Farmaceuta> farmaceutaCache = new EntityCache<>("farmaceutas", id -> farmaceutaDao.read(id));
+
+    // --- CONTADORES DE RECETAS POR ESTADO (dashboard) ---
+    // Se ajustan en cada create/cambio de estado y se concilian con la BD cada tanto
+    private static final boolean ESTADO_COUNTERS = Boolean.parseBoolean(System.getProperty("server.dashboard.counters", "true"));
+    private static final long RECONCILE_SECONDS = Long.getLong("server.dashboard.reconcileSeconds", 300);
+    private final EstadoCounters estadoCounters = new EstadoCounters();
+
+    // --- RESUMEN MENSUAL DE CONSUMO (dashboard) ---
+    // Los meses ya cerrados del gráfico de medicamentos salen de ConsumoMensual; solo el mes en
+    // curso (y los bordes parciales del rango) se cuentan sobre las líneas de receta.
+    // server.dashboard.rollupBackfill: auto (rehacerlo si está vacío), always (en cada arranque) o never
+    private static final boolean CONSUMO_ROLLUP = Boolean.parseBoolean(System.getProperty("server.dashboard.rollup", "true"));
+    private static final String CONSUMO_BACKFILL = System.getProperty("server.dashboard.rollupBackfill", "auto");
+    // Meses cerrados (los últimos) que se comparan al arrancar contra las recetas: si el resumen
+    // no se mantuvo un tiempo (rollup=false, un arranque fallido), auto lo rehace (0 = no comparar)
+    private static final int CONSUMO_CHECK_MONTHS = Integer.getInteger("server.dashboard.rollupCheckMonths", 12);
+    private volatile boolean consumoListo = false;
+
+    // --- SESIONES ---
+    // LOGIN abre una; las demás acciones se autorizan con ella, sin consultar la BD
+    private final SessionTable sessions = new SessionTable();
 
     // --- CONTADOR PARA CÓDIGOS DE RECETA ---
     private AtomicInteger recetaCounter; // Solo declarado aquí
@@ -43,6 +100,7 @@ public class Service {
         this.medicoDao = new MedicoDao();
         this.farmaceutaDao = new FarmaceutaDao();
         this.recetaDao = new RecetaDao();
+        this.consumoMensualDao = new ConsumoMensualDao();
 
         // === INICIALIZACIÓN CORRECTA DEL CONTADOR ===
         try {
@@ -57,12 +115,130 @@ public class Service {
             this.recetaCounter = new AtomicInteger(0); // Plan B: empezar en 0 si falla la BD
         }
         // ===========================================
+
+        if (SEARCH_INDEX) {
+            loadSearchIndexes();
+        }
+        if (ESTADO_COUNTERS) {
+            reconcileEstadoCounters();
+            startReconciler();
+        }
+        if (CONSUMO_ROLLUP) {
+            prepareConsumoMensual();
+        }
+    }
+
+    // Carga los índices de búsqueda desde la BD. Si falla, las búsquedas siguen yendo a la BD.
+    private void loadSearchIndexes() {
+        try {
+            pacienteIndex.rebuild(pacienteDao.findAll());
+            medicamentoIndex.rebuild(medicamentoDao.findAll());
+        } catch (Exception e) {
+            System.err.println("No se pudieron cargar los índices de búsqueda, se buscará en la BD: " + e.getMessage());
+        }
+    }
+
+    // Carga (o corrige) los contadores por estado desde la BD. Se cuenta en una unidad de trabajo:
+    // en la primaria, no en una réplica atrasada. Si falla, el dashboard sigue contando en la BD.
+    private void reconcileEstadoCounters() {
+        try {
+            long cambiosAntes = estadoCounters.changeCount();
+            Map<String, Integer> desdeBD = Database.getInstance().inTransaction(() -> recetaDao.contarRecetasPorEstado());
+            estadoCounters.reconcile(desdeBD, cambiosAntes);
+        } catch (Exception e) {
+            System.err.println("No se pudieron conciliar los contadores de recetas por estado: " + e.getMessage());
+        }
+    }
+
+    // Deja listo el resumen mensual (rehaciéndolo desde las recetas si corresponde), antes de
+    // atender clientes. Si falla (p. ej. la tabla no existe), el dashboard cuenta todo en la BD.
+    private void prepareConsumoMensual() {
+        try {
+            Database.getInstance().inTransaction(() -> {
+                boolean rehacer = "always".equals(CONSUMO_BACKFILL)
+                        || ("auto".equals(CONSUMO_BACKFILL) && !consumoMensualDao.hayDatos());
+                if (!rehacer) {
+                    String mes = mesConsumoDesactualizado(); // También confirma que la tabla existe
+                    if (mes != null) {
+                        if ("never".equals(CONSUMO_BACKFILL)) {
+                            throw new Exception("el mes " + mes + " no coincide con las recetas y el "
+                                    + "resumen no se rehace (server.dashboard.rollupBackfill=never)");
+                        }
+                        System.err.println(">>> Resumen mensual de consumo desactualizado (el mes " + mes
+                                + " no coincide con las recetas), se rehace.");
+                        rehacer = true;
+                    }
+                }
+                if (rehacer) {
+                    long inicio = System.nanoTime();
+                    int filas = consumoMensualDao.backfill();
+                    System.out.println(">>> Resumen mensual de consumo rehecho: " + filas + " filas en "
+                            + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+                }
+                return null;
+            });
+            consumoListo = true;
+        } catch (Exception e) {
+            System.err.println("No se pudo preparar el resumen mensual de consumo, se contará en la BD: " + e.getMessage());
+        }
+    }
+
+    // Compara los últimos CONSUMO_CHECK_MONTHS meses cerrados del resumen con la cuenta sobre las
+    // recetas. Devuelve el primer mes ("AAAA-MM") que no coincide, o null si coinciden todos.
+    private String mesConsumoDesactualizado() throws Exception {
+        consumoMensualDao.hayDatos();
+        if (CONSUMO_CHECK_MONTHS <= 0) return null;
+        YearMonth ultimo = YearMonth.now().minusMonths(1);
+        YearMonth primero = ultimo.minusMonths(CONSUMO_CHECK_MONTHS - 1);
+        Map<String, Integer> resumen = consumoMensualDao.sumarPorMes(toPeriodo(primero), toPeriodo(ultimo), List.of());
+        Map<String, Integer> recetas = recetaDao.contarMedicamentosPorMes(
+                toDate(primero.atDay(1)), toDate(ultimo.atEndOfMonth()), List.of());
+        TreeSet<String> meses = new TreeSet<>(resumen.keySet());
+        meses.addAll(recetas.keySet());
+        for (String mes : meses) {
+            if (!Objects.equals(resumen.get(mes), recetas.get(mes))) {
+                return mes;
+            }
+        }
+        return null;
+    }
+
+    private void startReconciler() {
+        if (RECONCILE_SECONDS <= 0) return;
+        Thread reconciler = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(RECONCILE_SECONDS * 1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                reconcileEstadoCounters();
+            }
+        }, "estado-reconcile");
+        reconciler.setDaemon(true);
+        reconciler.start();
     }
 
     // =======================================================
     // ===          MÉTODOS DE NEGOCIO REALES              ===
     // =======================================================
 
+    // El tamaño de página pedido, dentro de 1..MAX_PAGE_SIZE
+    private static int pageSize(int pedido) throws Exception {
+        if (pedido <= 0) {
+            throw new Exception("El tamaño de página debe ser mayor a cero.");
+        }
+        return Math.min(pedido, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Ejecuta varias operaciones de negocio como una sola transacción de BD (lo usa BATCH).
+     * Si alguna lanza una excepción se deshace todo y la excepción se propaga.
+     */
+    public <T> T inTransaction(Database.Work<T> work) throws Exception {
+        return Database.getInstance().inTransaction(work);
+    }
+
     /**
      * Autentica a un usuario y devuelve el objeto COMPLETO según su rol (Medico, Farmaceuta, etc.)
      * @param id El ID del usuario.
@@ -81,12 +257,12 @@ public class Service {
         String tipoUsuario = usuarioBase.getTipo().trim();
 
         if (tipoUsuario.equalsIgnoreCase("Medico")) {
-            Medico med = medicoDao.read(id);
+            Medico med = ENTITY_CACHE ? medicoCache.get(id) : medicoDao.read(id);
             if (med == null) throw new Exception("Error de integridad: Usuario Médico no encontrado en detalles.");
             return med;
 
         } else if (tipoUsuario.equalsIgnoreCase("Farmaceuta")) {
-            Farmaceuta far = farmaceutaDao.read(id);
+            Farmaceuta far = ENTITY_CACHE ? farmaceutaCache.get(id) : farmaceutaDao.read(id);
             if (far == null) throw new Exception("Error de integridad: Usuario Farmaceuta no encontrado.");
             return far;
 
@@ -99,6 +275,41 @@ public class Service {
         }
     }
 
+    /**
+     * Autentica al usuario (ver autenticar) y le abre una sesión en el servidor.
+     * @return El token de la sesión nueva y el usuario (que también lo lleva en Usuario.getToken).
+     * @throws Exception Si el usuario/clave es incorrecto o el rol no está autorizado.
+     */
+    public Sesion iniciarSesion(String id, String clave) throws Exception {
+        Usuario usuario = autenticar(id, clave); // Puede ser el de la caché: no se modifica
+        String token = sessions.open(usuario);
+        return new Sesion(token, SessionTable.withToken(usuario, token));
+    }
+
+    /**
+     * El usuario de una sesión abierta, sin ir a la BD.
+     * @return El usuario, o null si el token no existe o la sesión venció.
+     */
+    public Usuario usuarioDeSesion(String token) {
+        return sessions.get(token);
+    }
+
+    /**
+     * Retoma una sesión abierta (p. ej. desde una conexión nueva).
+     * @throws Exception Si el token no existe o la sesión venció.
+     */
+    public Usuario reanudarSesion(String token) throws Exception {
+        Usuario usuario = sessions.get(token);
+        if (usuario == null) {
+            throw new Exception("La sesión venció o no es válida, ingrese de nuevo.");
+        }
+        return SessionTable.withToken(usuario, token); // La copia de la tabla no sale de ella
+    }
+
+    public void cerrarSesion(String token) {
+        sessions.close(token);
+    }
+
     /**
      * Cambia la clave de un usuario existente.
      * @param id ID del usuario.
@@ -118,6 +329,11 @@ public class Service {
         }
         // 3. Llamar al DAO para actualizar solo la contraseña.
         usuarioDao.updatePassword(id, claveNueva);
+        // Los médicos y farmaceutas en caché tienen la clave
+        UnitOfWork.afterCommit(() -> {
+            medicoCache.invalidate(id);
+            farmaceutaCache.invalidate(id);
+        });
     }
 
     // --- MÉTODOS CRUD PARA MEDICAMENTOS ---
@@ -134,6 +350,11 @@ public class Service {
             throw new Exception("El código y el nombre del medicamento son requeridos.");
         }
         medicamentoDao.create(med);
+        // Al índice y a la caché solo si se confirma (dentro de un lote transaccional, al final)
+        UnitOfWork.afterCommit(() -> {
+            medicamentoIndex.put(med);
+            medicamentoCatalog.invalidate();
+        });
     }
 
     public void updateMedicamento(Medicamento med) throws Exception {
@@ -144,6 +365,10 @@ public class Service {
         }
         // El DAO se encarga de verificar si el código existe antes de actualizar
         medicamentoDao.update(med);
+        UnitOfWork.afterCommit(() -> {
+            medicamentoIndex.put(med);
+            medicamentoCatalog.invalidate();
+        });
     }
 
     public void deleteMedicamento(String codigo) throws Exception {
@@ -152,13 +377,17 @@ public class Service {
         }
         // El DAO se encarga de verificar si existe y maneja restricciones de FK si aplica
         medicamentoDao.delete(codigo);
+        UnitOfWork.afterCommit(() -> {
+            medicamentoIndex.remove(codigo);
+            medicamentoCatalog.invalidate();
+        });
     }
 
     public Medicamento readMedicamento(String codigo) throws Exception {
         if (codigo == null || codigo.trim().isEmpty()) {
             throw new Exception("Se requiere el código del medicamento a buscar.");
         }
-        Medicamento med = medicamentoDao.read(codigo);
+        Medicamento med = CATALOG_CACHE ? medicamentoCatalog.get(codigo) : medicamentoDao.read(codigo);
         if (med == null) {
             throw new Exception("Medicamento no encontrado.");
         }
@@ -166,14 +395,32 @@ public class Service {
     }
 
     public List<Medicamento> getMedicamentos() throws Exception {
-        return medicamentoDao.findAll();
+        return CATALOG_CACHE ? medicamentoCatalog.getAll() : medicamentoDao.findAll();
     }
 
+    /** Aciertos, cargas e invalidaciones de las cachés (catálogo, entidades por clave y contadores del dashboard). */
+    public String getCacheStats() {
+        return (CATALOG_CACHE ? medicamentoCatalog.getStats() : "caché de medicamentos desactivada") + "; "
+                + (ENTITY_CACHE ? pacienteCache.getStats() + "; " + medicoCache.getStats() + "; "
+                + farmaceutaCache.getStats() : "caché de entidades desactivada")
+                + (ESTADO_COUNTERS ? "; " + estadoCounters.getStats() : "")
+                + (CONSUMO_ROLLUP ? "; resumen mensual de consumo " + (consumoListo ? "activo" : "sin cargar") : "");
+    }
+
+    // Búsqueda por tecla: del índice en memoria (los SEARCH_TOP_K más relevantes), o de la BD si no está cargado
     public List<Medicamento> searchMedicamentos(String filtro) throws Exception {
+        if (medicamentoIndex.isReady()) {
+            return medicamentoIndex.search(filtro, SEARCH_TOP_K);
+        }
         // Si el filtro es nulo, buscar todos (o lanzar error, según prefieras)
         return medicamentoDao.search(filtro == null ? "" : filtro);
     }
 
+    // Versión paginada (por clave): una página y el cursor de la siguiente
+    public Page<Medicamento> searchMedicamentosPage(String filtro, int pageSize, String cursor) throws Exception {
+        return medicamentoDao.searchPage(filtro == null ? "" : filtro, pageSize(pageSize), cursor);
+    }
+
     // --- MÉTODOS CRUD PARA PACIENTES ---
 
     public void createPaciente(Paciente p) throws Exception {
@@ -188,13 +435,14 @@ public class Service {
             throw new Exception("La cédula y el nombre del paciente son requeridos.");
         }
         pacienteDao.create(p);
+        UnitOfWork.afterCommit(() -> pacienteIndex.put(p));
     }
 
     public Paciente readPaciente(String id) throws Exception {
         if (id == null || id.trim().isEmpty()) {
             throw new Exception("Se requiere la cédula del paciente a buscar.");
         }
-        Paciente p = pacienteDao.read(id);
+        Paciente p = ENTITY_CACHE ? pacienteCache.get(id) : pacienteDao.read(id);
         if (p == null) {
             throw new Exception("Paciente no encontrado.");
         }
@@ -208,6 +456,10 @@ public class Service {
             throw new Exception("La cédula y el nombre del paciente son requeridos.");
         }
         pacienteDao.update(p); // El DAO maneja si el ID no existe
+        UnitOfWork.afterCommit(() -> {
+            pacienteIndex.put(p);
+            pacienteCache.invalidate(p.getId());
+        });
     }
 
     public void deletePaciente(String id) throws Exception {
@@ -216,16 +468,28 @@ public class Service {
         }
         // El DAO maneja si no existe y restricciones de FK (recetas)
         pacienteDao.delete(id);
+        UnitOfWork.afterCommit(() -> {
+            pacienteIndex.remove(id);
+            pacienteCache.invalidate(id);
+        });
     }
 
     public List<Paciente> getPacientes() throws Exception {
         return pacienteDao.findAll();
     }
 
+    // Búsqueda por tecla: del índice en memoria (los SEARCH_TOP_K más relevantes), o de la BD si no está cargado
     public List<Paciente> searchPacientes(String filtro) throws Exception {
+        if (pacienteIndex.isReady()) {
+            return pacienteIndex.search(filtro, SEARCH_TOP_K);
+        }
         return pacienteDao.search(filtro == null ? "" : filtro);
     }
 
+    public Page<Paciente> searchPacientesPage(String filtro, int pageSize, String cursor) throws Exception {
+        return pacienteDao.searchPage(filtro == null ? "" : filtro, pageSize(pageSize), cursor);
+    }
+
 
     // --- MÉTODOS CRUD PARA MÉDICOS ---
 
@@ -247,14 +511,18 @@ public class Service {
         }
         // Asignar tipo correcto
         m.setTipo("Medico");
-        medicoDao.create(m);
+        // Usuario y MedicoDetalle en una sola transacción: o quedan las dos filas o ninguna
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            medicoDao.create(m);
+            uow.commit();
+        }
     }
 
     public Medico readMedico(String id) throws Exception {
         if (id == null || id.trim().isEmpty()) {
             throw new Exception("Se requiere la cédula del médico a buscar.");
         }
-        Medico m = medicoDao.read(id);
+        Medico m = ENTITY_CACHE ? medicoCache.get(id) : medicoDao.read(id);
         if (m == null) {
             throw new Exception("Médico no encontrado.");
         }
@@ -270,7 +538,11 @@ public class Service {
         }
         // Asegurarse que el tipo no cambie (o manejarlo si se permite)
         m.setTipo("Medico");
-        medicoDao.update(m); // El DAO actualiza Usuario y MedicoDetalle
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            medicoDao.update(m); // El DAO actualiza Usuario y MedicoDetalle
+            UnitOfWork.afterCommit(() -> medicoCache.invalidate(m.getId()));
+            uow.commit();
+        }
     }
 
     public void deleteMedico(String id) throws Exception {
@@ -279,6 +551,7 @@ public class Service {
         }
         // El DAO borra de Usuario (y MedicoDetalle por CASCADE)
         medicoDao.delete(id);
+        UnitOfWork.afterCommit(() -> medicoCache.invalidate(id));
     }
 
     public List<Medico> getMedicos() throws Exception {
@@ -289,6 +562,10 @@ public class Service {
         return medicoDao.search(filtro == null ? "" : filtro);
     }
 
+    public Page<Medico> searchMedicosPage(String filtro, int pageSize, String cursor) throws Exception {
+        return medicoDao.searchPage(filtro == null ? "" : filtro, pageSize(pageSize), cursor);
+    }
+
     // --- MÉTODOS CRUD PARA FARMACEUTAS ---
 
     public void createFarmaceuta(Farmaceuta f) throws Exception {
@@ -315,7 +592,7 @@ public class Service {
         if (id == null || id.trim().isEmpty()) {
             throw new Exception("Se requiere la cédula del farmaceuta a buscar.");
         }
-        Farmaceuta f = farmaceutaDao.read(id);
+        Farmaceuta f = ENTITY_CACHE ? farmaceutaCache.get(id) : farmaceutaDao.read(id);
         if (f == null) {
             throw new Exception("Farmaceuta no encontrado.");
         }
@@ -331,6 +608,7 @@ public class Service {
         // Asegurar tipo correcto
         f.setTipo("Farmaceuta");
         farmaceutaDao.update(f); // El DAO actualiza Usuario
+        UnitOfWork.afterCommit(() -> farmaceutaCache.invalidate(f.getId()));
     }
 
     public void deleteFarmaceuta(String id) throws Exception {
@@ -338,6 +616,7 @@ public class Service {
             throw new Exception("Se requiere la cédula del farmaceuta a eliminar.");
         }
         farmaceutaDao.delete(id); // El DAO borra de Usuario
+        UnitOfWork.afterCommit(() -> farmaceutaCache.invalidate(id));
     }
 
     public List<Farmaceuta> getFarmaceutas() throws Exception {
@@ -348,6 +627,10 @@ public class Service {
         return farmaceutaDao.search(filtro == null ? "" : filtro);
     }
 
+    public Page<Farmaceuta> searchFarmaceutasPage(String filtro, int pageSize, String cursor) throws Exception {
+        return farmaceutaDao.searchPage(filtro == null ? "" : filtro, pageSize(pageSize), cursor);
+    }
+
     // ===========================================================
     // === MÉTODOS PARA GESTIÓN DE RECETAS ===
     // ===========================================================
@@ -395,8 +678,17 @@ public class Service {
         r.setPacienteId(r.getPaciente().getId());
         r.setMedicoId(r.getMedico().getId());
 
-        // 3. Llamar al DAO para persistir
-        recetaDao.create(r);
+        // 3. Llamar al DAO para persistir: encabezado y líneas en una sola transacción
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            recetaDao.create(r);
+            if (consumoListo) {
+                consumoMensualDao.acumular(r); // En la misma transacción: o quedan los dos o ninguno
+            }
+            estadoCounters.pending(); // Hasta que termine la transacción, no se concilia
+            UnitOfWork.afterCommit(() -> estadoCounters.created(EstadoReceta.CONFECCIONADA));
+            UnitOfWork.afterCompletion(estadoCounters::settled);
+            uow.commit();
+        }
 
         // 4. Devolver la receta con los datos asignados
         return r;
@@ -419,7 +711,18 @@ public class Service {
         // Opcional: Podrías añadir lógica aquí para validar transiciones de estado
         // ej: if (estadoActual == ENTREGADA && nuevoEstado != ...) throw ...
 
-        recetaDao.updateEstado(codigoReceta, nuevoEstado);
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            // El estado de antes (con la fila bloqueada), para ajustar los contadores del dashboard
+            EstadoReceta anterior = recetaDao.readEstadoForUpdate(codigoReceta);
+            if (anterior == null) {
+                throw new Exception("Receta no actualizada, el código '" + codigoReceta + "' no existe.");
+            }
+            recetaDao.updateEstado(codigoReceta, nuevoEstado);
+            estadoCounters.pending(); // Hasta que termine la transacción, no se concilia
+            UnitOfWork.afterCommit(() -> estadoCounters.transition(anterior, nuevoEstado));
+            UnitOfWork.afterCompletion(estadoCounters::settled);
+            uow.commit();
+        }
     }
 
     /**
@@ -445,9 +748,14 @@ public class Service {
         return recetaDao.searchForHistorico(filtro == null ? "" : filtro);
     }
 
+    public Page<Receta> findRecetasHistoricoPage(String filtro, int pageSize, String cursor) throws Exception {
+        return recetaDao.searchForHistoricoPage(filtro == null ? "" : filtro, pageSize(pageSize), cursor);
+    }
+
     /**
      * Obtiene TODAS las recetas con información completa.
-     * ¡Cuidado! Puede ser pesado si hay muchas recetas. Considera paginación en un futuro.
+     * ¡Cuidado! Puede ser pesado si hay muchas recetas: para listas grandes están las
+     * páginas por clave (findRecetasHistoricoPage con el filtro vacío).
      * @return Lista de todas las recetas.
      * @throws Exception Si el DAO falla.
      */
@@ -466,6 +774,9 @@ public class Service {
      * @throws Exception Si el DAO falla.
      */
     public Map<String, Integer> contarRecetasPorEstado() throws Exception {
+        if (estadoCounters.isReady()) {
+            return estadoCounters.snapshot(); // De memoria, sin importar cuántas recetas haya
+        }
         return recetaDao.contarRecetasPorEstado();
     }
 
@@ -473,7 +784,7 @@ public class Service {
      * Lógica para obtener el conteo de medicamentos más usados en un rango de fechas.
      * @param desde Fecha de inicio.
      * @param hasta Fecha de fin.
-     * @param nombresMedicamentos (Parámetro no usado actualmente por el DAO, pero mantenido).
+     * @param nombresMedicamentos Medicamentos a contar (vacía = todos).
      * @return Un mapa con {NombreMedicamento -> Cantidad}.
      * @throws Exception Si las fechas son inválidas o el DAO falla.
      */
@@ -484,7 +795,53 @@ public class Service {
         if (desde.after(hasta)) {
             throw new Exception("La fecha 'desde' no puede ser posterior a la fecha 'hasta'.");
         }
-        // El DAO se encarga de la consulta SQL
-        return recetaDao.contarMedicamentosPorMes(desde, hasta, nombresMedicamentos);
+        if (!consumoListo) {
+            return recetaDao.contarMedicamentosPorMes(desde, hasta, nombresMedicamentos);
+        }
+        // Meses completos dentro del rango y ya cerrados: del resumen. El resto (un mes cortado
+        // al inicio o al final, y el mes en curso) se cuenta sobre las recetas, como antes.
+        LocalDate dDesde = toLocalDate(desde);
+        LocalDate dHasta = toLocalDate(hasta);
+        YearMonth primerMes = YearMonth.from(dDesde);
+        if (dDesde.getDayOfMonth() != 1) {
+            primerMes = primerMes.plusMonths(1);
+        }
+        YearMonth ultimoMes = YearMonth.from(dHasta);
+        if (!dHasta.equals(ultimoMes.atEndOfMonth())) {
+            ultimoMes = ultimoMes.minusMonths(1);
+        }
+        YearMonth ultimoCerrado = YearMonth.now().minusMonths(1);
+        if (ultimoMes.isAfter(ultimoCerrado)) {
+            ultimoMes = ultimoCerrado;
+        }
+        if (primerMes.isAfter(ultimoMes)) {
+            return recetaDao.contarMedicamentosPorMes(desde, hasta, nombresMedicamentos);
+        }
+
+        Map<String, Integer> resultado = new TreeMap<>(consumoMensualDao.sumarPorMes(
+                toPeriodo(primerMes), toPeriodo(ultimoMes), nombresMedicamentos));
+        if (dDesde.isBefore(primerMes.atDay(1))) {
+            recetaDao.contarMedicamentosPorMes(desde, toDate(primerMes.atDay(1).minusDays(1)), nombresMedicamentos)
+                    .forEach((mes, cantidad) -> resultado.merge(mes, cantidad, Integer::sum));
+        }
+        if (dHasta.isAfter(ultimoMes.atEndOfMonth())) {
+            recetaDao.contarMedicamentosPorMes(toDate(ultimoMes.plusMonths(1).atDay(1)), hasta, nombresMedicamentos)
+                    .forEach((mes, cantidad) -> resultado.merge(mes, cantidad, Integer::sum));
+        }
+        return resultado;
+    }
+
+    // --- Métodos auxiliares del dashboard (fechas en la zona del servidor, como RecetaDao) ---
+
+    private static LocalDate toLocalDate(Date fecha) {
+        return fecha.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static Date toDate(LocalDate fecha) {
+        return Date.from(fecha.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static int toPeriodo(YearMonth mes) {
+        return mes.getYear() * 100 + mes.getMonthValue();
     }
 }
\ No newline at end of file
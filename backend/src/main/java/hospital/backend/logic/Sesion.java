@@ -0,0 +1,25 @@
+package hospital.backend.logic;
+
+import hospital.protocol.logic.Usuario;
+
+/**
+ * Resultado de iniciar sesión (Service.iniciarSesion): el token que abrió la SessionTable
+ * y el usuario autenticado que se le responde al cliente.
+ */
+public class Sesion {
+    private final String token;
+    private final Usuario usuario;
+
+    public Sesion(String token, Usuario usuario) {
+        this.token = token;
+        this.usuario = usuario;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+}
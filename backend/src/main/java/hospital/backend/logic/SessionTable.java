@@ -0,0 +1,118 @@
+package hospital.backend.logic;
+
+import hospital.protocol.logic.Administrador;
+import hospital.protocol.logic.Farmaceuta;
+import hospital.protocol.logic.Medico;
+import hospital.protocol.logic.Usuario;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sesiones abiertas en el servidor: token -> usuario autenticado (ya con su tipo concreto:
+ * Medico, Farmaceuta o Administrador). LOGIN abre una y, desde ahí, cada acción se autoriza
+ * buscando el token en memoria, sin volver a consultar la BD.
+ *
+ * Vencen si pasan server.session.ttlMinutes (30) sin usarse; cada uso las extiende.
+ * Un hilo las va sacando de la tabla cada server.session.sweepSeconds (60).
+ */
+public class SessionTable {
+    private static final long TTL_NANOS = TimeUnit.MINUTES.toNanos(Long.getLong("server.session.ttlMinutes", 30));
+    private static final long SWEEP_SECONDS = Long.getLong("server.session.sweepSeconds", 60);
+    private static final int TOKEN_BYTES = 32;
+
+    private static final class Session {
+        final Usuario usuario;
+        volatile long lastUseNanos = System.nanoTime();
+
+        Session(Usuario usuario) {
+            this.usuario = usuario;
+        }
+
+        boolean expired(long now) {
+            return now - lastUseNanos > TTL_NANOS;
+        }
+    }
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public SessionTable() {
+        Thread sweeper = new Thread(this::sweep, "session-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    /**
+     * Abre una sesión para el usuario y devuelve su token. La tabla guarda su propia copia:
+     * el usuario recibido no se modifica (puede ser el de una caché, compartido entre conexiones).
+     */
+    public String open(Usuario usuario) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(withToken(usuario, token)));
+        return token;
+    }
+
+    /**
+     * Una copia del usuario (del mismo tipo concreto) con el token de la sesión, para guardarla
+     * o responderla sin tocar el original.
+     */
+    static Usuario withToken(Usuario usuario, String token) {
+        Usuario copia;
+        if (usuario instanceof Medico) {
+            copia = new Medico(usuario.getId(), usuario.getClave(), usuario.getNombre(),
+                    ((Medico) usuario).getEspecialidad());
+        } else if (usuario instanceof Farmaceuta) {
+            copia = new Farmaceuta(usuario.getId(), usuario.getClave(), usuario.getNombre());
+        } else if (usuario instanceof Administrador) {
+            copia = new Administrador(usuario.getId(), usuario.getClave(), usuario.getNombre());
+        } else {
+            copia = new Usuario(usuario.getId(), usuario.getClave(), usuario.getNombre(), usuario.getTipo());
+        }
+        copia.setTipo(usuario.getTipo());
+        copia.setToken(token);
+        return copia;
+    }
+
+    /** El usuario de la sesión, o null si el token no existe o ya venció. Extiende la sesión. */
+    public Usuario get(String token) {
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        if (session == null) return null;
+        long now = System.nanoTime();
+        if (session.expired(now)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.lastUseNanos = now;
+        return session.usuario;
+    }
+
+    public void close(String token) {
+        if (token != null) {
+            sessions.remove(token);
+        }
+    }
+
+    /** Sesiones en la tabla (algunas pueden estar vencidas y sin barrer todavía). */
+    public int size() {
+        return sessions.size();
+    }
+
+    private void sweep() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(SWEEP_SECONDS));
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            sessions.values().removeIf(session -> session.expired(now));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package hospital.backend.server;
+
+import hospital.protocol.ServerBusyException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Control de admisión compartido por todos los Workers.
+ * Limita cuántas peticiones se ejecutan a la vez contra el Service/BD; las demás
+ * esperan en una cola (FIFO) hasta un plazo máximo. Si el plazo vence, la petición
+ * se rechaza con ServerBusyException en lugar de quedarse esperando para siempre.
+ */
+public class AdmissionControl {
+    private final Semaphore slots;
+    private final int maxInFlight;
+    private final long queueTimeoutMillis;
+    private final long retryAfterMillis;
+
+    // --- Métricas ---
+    private final AtomicLong admitted = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    /**
+     * @param maxInFlight Máximo de peticiones ejecutándose al mismo tiempo.
+     * @param queueTimeoutMillis Tiempo máximo que una petición espera turno.
+     * @param retryAfterMillis Espera sugerida al cliente cuando se le rechaza.
+     */
+    public AdmissionControl(int maxInFlight, long queueTimeoutMillis, long retryAfterMillis) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.slots = new Semaphore(this.maxInFlight, true); // 'true' = cola justa (FIFO)
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Espera un turno para ejecutar la petición.
+     * @throws ServerBusyException Si no hubo turno antes del plazo.
+     */
+    public void acquire() throws ServerBusyException {
+        try {
+            if (slots.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                admitted.incrementAndGet();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.incrementAndGet();
+        throw new ServerBusyException(retryAfterMillis);
+    }
+
+    /** Rechazo sin esperar turno (p. ej. no queda hilo para ejecutar la petición); cuenta como rechazada. */
+    public ServerBusyException reject() {
+        rejected.incrementAndGet();
+        return new ServerBusyException(retryAfterMillis);
+    }
+
+    /** Libera el turno tomado con acquire(). */
+    public void release() {
+        slots.release();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    // --- Métricas ---
+
+    public int getInFlight() {
+        return maxInFlight - slots.availablePermits();
+    }
+
+    public int getQueued() {
+        return slots.getQueueLength();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,55 @@
+package hospital.backend.server;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores de compresión de respuestas, por código de acción.
+ * Sirven para ver qué acciones ganan con la compresión (listas grandes) y cuánto
+ * tiempo de CPU cuesta, y ajustar el umbral (-Dserver.compression.threshold).
+ */
+public class CompressionStats {
+    private static final Map<Integer, Counters> byAction = new ConcurrentHashMap<>();
+
+    private CompressionStats() {
+    }
+
+    private static class Counters {
+        final AtomicLong responses = new AtomicLong();  // Respuestas de esta acción
+        final AtomicLong compressed = new AtomicLong(); // ... de ellas, cuántas salieron comprimidas
+        final AtomicLong rawBytes = new AtomicLong();   // Bytes antes de comprimir
+        final AtomicLong sentBytes = new AtomicLong();  // Bytes que salieron por el socket
+        final AtomicLong nanos = new AtomicLong();      // Tiempo gastado comprimiendo
+    }
+
+    /**
+     * Registra una respuesta.
+     * @param algorithm Con qué se comprimió (0 si salió sin comprimir).
+     * @param nanos Tiempo gastado intentando comprimirla (0 si ni se intentó).
+     */
+    static void record(int actionCode, byte algorithm, int rawBytes, int sentBytes, long nanos) {
+        Counters c = byAction.computeIfAbsent(actionCode, k -> new Counters());
+        c.responses.incrementAndGet();
+        if (algorithm != 0) c.compressed.incrementAndGet();
+        c.rawBytes.addAndGet(rawBytes);
+        c.sentBytes.addAndGet(sentBytes);
+        c.nanos.addAndGet(nanos);
+    }
+
+    /** Imprime una línea por código de acción (ordenadas por código). */
+    static void report(String algorithm) {
+        if (byAction.isEmpty()) return;
+        System.out.println(">>> Compresión de respuestas (" + algorithm + "):");
+        for (Map.Entry<Integer, Counters> e : new TreeMap<>(byAction).entrySet()) {
+            Counters c = e.getValue();
+            long raw = c.rawBytes.get();
+            long sent = c.sentBytes.get();
+            String ratio = raw == 0 ? "-" : String.format("%.1f%%", 100.0 * sent / raw);
+            System.out.println(">>>   acción " + e.getKey() + ": " + c.responses.get() + " respuestas ("
+                    + c.compressed.get() + " comprimidas), " + raw + " -> " + sent + " bytes (" + ratio + "), "
+                    + (c.nanos.get() / 1_000_000) + " ms comprimiendo");
+        }
+    }
+}
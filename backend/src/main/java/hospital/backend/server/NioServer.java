@@ -0,0 +1,366 @@
+package hospital.backend.server;
+
+import hospital.backend.logic.Service;
+import hospital.protocol.Frame;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Motor de servidor alternativo basado en java.nio (Selector + SocketChannel).
+ * El hilo principal acepta conexiones y las reparte entre unos pocos hilos de E/S
+ * (event loops). Las llamadas al Service se ejecutan en un pool de handlers aparte,
+ * así un cliente inactivo no ocupa ningún hilo mientras no envíe peticiones.
+ *
+ * Habla el mismo protocolo que el motor de hilos: el event loop separa las tramas
+ * (Frame) a medida que llegan, sin bloquear, y solo cuando una trama está completa
+ * se le da un hilo del pool al Worker de esa conexión para atenderla. Las tramas de
+ * una conexión se decodifican en orden, pero cada petición se ejecuta en su propia
+ * tarea del pool, así que sus respuestas pueden salir en otro orden.
+ *
+ * Si una conexión llega al tope de peticiones pendientes (server.connection.maxPending),
+ * el event loop deja de separar sus tramas y de leer su canal hasta que alguna termine.
+ */
+public class NioServer {
+    private static final int READ_BUFFER_SIZE = 8192;
+    // Bytes encolados por conexión a partir de los cuales los handlers esperan a que el
+    // socket se vacíe (un cliente que no lee no acumula respuestas sin límite)
+    private static final long MAX_OUTBOUND_BYTES = Long.getLong("server.nio.maxOutboundBytes", 1024 * 1024);
+
+    private final int port;
+    private final Service service;
+    private final AtomicInteger activeClients;
+    private final AdmissionControl admission;
+    private final EventLoop[] loops;
+    private final ExecutorService handlers;
+
+    public NioServer(int port, Service service, AtomicInteger activeClients, AdmissionControl admission,
+                     int ioThreads, int handlerThreads) throws IOException {
+        this.port = port;
+        this.service = service;
+        this.activeClients = activeClients;
+        this.admission = admission;
+        this.loops = new EventLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop();
+        }
+        // Con menos handlers que turnos de admisión, el pool sería el límite real: nadie
+        // esperaría turno y el control de admisión nunca rechazaría
+        int minHandlers = admission.getMaxInFlight() + 1;
+        if (handlerThreads < minHandlers) {
+            System.err.println(">>> server.nio.handlerThreads=" + handlerThreads + " es menor que server.maxInFlight="
+                    + admission.getMaxInFlight() + "; se usan " + minHandlers + " handlers.");
+            handlerThreads = minHandlers;
+        }
+        AtomicInteger handlerCount = new AtomicInteger(0);
+        this.handlers = Executors.newFixedThreadPool(handlerThreads, r -> {
+            Thread t = new Thread(r, "nio-handler-" + handlerCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Arranca los event loops y se queda aceptando conexiones en el hilo actual.
+     */
+    public void start() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            new Thread(loops[i], "nio-loop-" + (i + 1)).start();
+        }
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(port));
+        System.out.println(">>> Servidor (NIO) escuchando en el puerto " + port + " con "
+                + loops.length + " hilos de E/S...");
+
+        int next = 0;
+        while (true) {
+            SocketChannel channel = listener.accept(); // El acceptor sí bloquea, es un solo hilo
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            String address = channel.socket().getInetAddress().getHostAddress();
+            System.out.println(">>> Cliente conectado desde " + address);
+
+            int currentClients = activeClients.incrementAndGet();
+            System.out.println(">>> Conexión NIO registrada. Clientes activos: " + currentClients);
+
+            EventLoop loop = loops[next];
+            next = (next + 1) % loops.length;
+            loop.register(new Connection(channel, loop, address));
+        }
+    }
+
+    // =======================================================
+    // ===                 EVENT LOOP (E/S)                ===
+    // =======================================================
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        EventLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        // Las operaciones sobre el Selector se hacen siempre dentro del hilo del loop
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void register(Connection conn) {
+            execute(() -> {
+                try {
+                    conn.key = conn.channel.register(selector, SelectionKey.OP_READ, conn);
+                } catch (IOException e) {
+                    System.err.println("Error al registrar la conexión de " + conn.address + ": " + e.getMessage());
+                    conn.close();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        Connection conn = (Connection) key.attachment();
+                        if (!key.isValid()) continue;
+                        if (key.isReadable()) conn.onReadable(buffer);
+                        if (key.isValid() && key.isWritable()) conn.onWritable();
+                    }
+                } catch (IOException e) {
+                    System.err.println(Thread.currentThread().getName() + ": Error en el selector: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // =======================================================
+    // ===                   CONEXIÓN                      ===
+    // =======================================================
+
+    private class Connection {
+        final SocketChannel channel;
+        final EventLoop loop;
+        final String address;
+        final Worker worker;
+        final Queue<Frame> requests = new ArrayDeque<>();      // Tramas completas por atender. Protegida por 'this'
+        final Queue<ByteBuffer> outbound = new ArrayDeque<>(); // Protegida por 'this'
+        long outboundBytes;     // Bytes en 'outbound' aún sin escribir. Protegido por 'this'
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        ByteBuffer inbound = ByteBuffer.allocate(READ_BUFFER_SIZE); // Bytes de una trama a medio llegar
+        SelectionKey key;
+        boolean scheduled;      // ¿Hay un handler procesando esta conexión? Protegido por 'this'
+        volatile boolean readPaused; // Tope de pendientes lleno: sin OP_READ. Solo lo cambia el event loop
+
+        Connection(SocketChannel channel, EventLoop loop, String address) {
+            this.channel = channel;
+            this.loop = loop;
+            this.address = address;
+            this.worker = new Worker(service, admission, handlers, address + ":" + channel.socket().getPort());
+            worker.setOnSlotFreed(() -> {
+                if (readPaused) loop.execute(this::resumeReading);
+            });
+        }
+
+        // --- Lado del event loop ---
+
+        void onReadable(ByteBuffer buffer) {
+            try {
+                buffer.clear();
+                int n = channel.read(buffer);
+                if (n < 0) {
+                    close();
+                    return;
+                }
+                if (n == 0) return;
+                buffer.flip();
+                append(buffer);
+                takeFrames();
+            } catch (IOException e) {
+                System.out.println("Cliente " + address + " se ha desconectado o hubo un error de lectura: " + e.getMessage());
+                close();
+            }
+        }
+
+        // Separa las tramas completas mientras haya lugar para más pendientes; lo que sobre se
+        // queda en 'inbound'. Si se llenó el tope, deja de leer el canal (ver resumeReading).
+        private void takeFrames() throws IOException {
+            inbound.flip();
+            boolean received = false;
+            try {
+                while (true) {
+                    if (!worker.tryAcquireSlot()) {
+                        // Primero se pausa y después se reintenta: si una petición libera su lugar
+                        // entre medio, o este reintento lo toma, o ella ya ve readPaused y agenda
+                        // resumeReading. Al revés, la conexión podría quedar sin leer para siempre.
+                        pauseReading();
+                        if (!worker.tryAcquireSlot()) break;
+                        unpauseReading();
+                    }
+                    Frame frame = Frame.read(inbound);
+                    if (frame == null) {
+                        worker.returnUnusedSlot();
+                        break;
+                    }
+                    synchronized (this) {
+                        requests.add(frame);
+                    }
+                    received = true;
+                }
+            } finally {
+                inbound.compact();
+            }
+            if (received) schedule();
+        }
+
+        private void pauseReading() {
+            readPaused = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+
+        private void unpauseReading() {
+            readPaused = false;
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        // Terminó una petición: separa las tramas que esperaban y, si queda lugar, vuelve a leer
+        void resumeReading() {
+            if (!readPaused || closed.get() || key == null || !key.isValid()) return;
+            readPaused = false;
+            try {
+                takeFrames();
+            } catch (IOException e) {
+                System.out.println("Cliente " + address + " envió una trama inválida: " + e.getMessage());
+                close();
+                return;
+            }
+            if (!readPaused) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+
+        private void append(ByteBuffer data) {
+            if (inbound.remaining() < data.remaining()) {
+                int needed = inbound.position() + data.remaining();
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(needed, inbound.capacity() * 2));
+                inbound.flip();
+                bigger.put(inbound);
+                inbound = bigger;
+            }
+            inbound.put(data);
+        }
+
+        void onWritable() {
+            try {
+                synchronized (this) {
+                    while (!outbound.isEmpty()) {
+                        ByteBuffer pending = outbound.peek();
+                        outboundBytes -= channel.write(pending);
+                        notifyAll(); // Hay lugar: despierta a los handlers que esperan para encolar
+                        if (pending.hasRemaining()) return; // El socket está lleno, seguimos luego
+                        outbound.poll();
+                    }
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                System.out.println("Cliente " + address + " se ha desconectado o hubo un error de escritura: " + e.getMessage());
+                close();
+            }
+        }
+
+        // --- Lado de los handlers ---
+
+        void enqueue(byte[] data) throws IOException {
+            synchronized (this) {
+                // Contrapresión: si el cliente no lee, el handler espera en lugar de acumular
+                while (outboundBytes > MAX_OUTBOUND_BYTES && !closed.get()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrumpido esperando lugar en la cola de salida");
+                    }
+                }
+                if (closed.get()) {
+                    throw new IOException("La conexión de " + address + " ya está cerrada");
+                }
+                outbound.add(ByteBuffer.wrap(data));
+                outboundBytes += data.length;
+            }
+            loop.execute(() -> {
+                if (key != null && key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            });
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (scheduled || closed.get()) return;
+                scheduled = true;
+            }
+            handlers.execute(this::process);
+        }
+
+        // Decodifica, en orden, todas las tramas que ya llegaron y las despacha al pool.
+        private void process() {
+            try {
+                while (true) {
+                    Frame request;
+                    synchronized (this) {
+                        request = requests.poll();
+                        if (request == null) {
+                            scheduled = false;
+                            return;
+                        }
+                    }
+                    worker.dispatch(request, response -> enqueue(response.toBytes()));
+                }
+            } catch (IOException e) {
+                System.out.println(Thread.currentThread().getName() + ": Cliente " + address + " envió una petición ilegible: " + e.getMessage());
+                close();
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            synchronized (this) {
+                notifyAll(); // Nadie va a vaciar la cola: los handlers que esperan deben enterarse
+            }
+            loop.execute(() -> {
+                try {
+                    if (key != null) key.cancel();
+                    channel.close();
+                } catch (IOException e) {
+                    // Ignorar errores al cerrar
+                }
+            });
+            worker.closed();
+            int currentClients = activeClients.decrementAndGet();
+            System.out.println(">>> Conexión NIO de " + address + " cerrada. Clientes activos: " + currentClients);
+        }
+    }
+}
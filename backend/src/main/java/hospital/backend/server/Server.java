@@ -1,10 +1,16 @@
 package hospital.backend.server;
 
+import hospital.backend.data.Database;
 import hospital.backend.logic.Service;
+import hospital.protocol.Compression;
 import hospital.protocol.Protocol;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger; // Importar AtomicInteger
 
 public class Server {
@@ -13,9 +19,55 @@ public class Server {
     // AtomicInteger es seguro para usar con hilos
     private static final AtomicInteger activeClients = new AtomicInteger(0);
 
+    // Motor de conexiones, se elige al arrancar: -Dserver.engine=thread (por defecto), virtual o nio
+    private static final String ENGINE = System.getProperty("server.engine", "thread");
+    // Control de admisión: peticiones ejecutándose a la vez y cuánto puede esperar turno cada una
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("server.maxInFlight", 16);
+    // Solo para el motor NIO: hilos de E/S (event loops) y hilos que atienden al Service.
+    // Los handlers esperan su turno de admisión bloqueados, así que deben ser más que
+    // server.maxInFlight para que haya cola (y rechazos): por defecto, el doble.
+    private static final int NIO_IO_THREADS = Integer.getInteger("server.nio.ioThreads", 2);
+    private static final int NIO_HANDLER_THREADS = Integer.getInteger("server.nio.handlerThreads", 2 * MAX_IN_FLIGHT);
+    // Solo para el motor de hilos: máximo de hilos para peticiones (con el mismo criterio que los
+    // handlers NIO). Si están todos ocupados, la petición se rechaza como "ocupado".
+    private static final int REQUEST_THREADS = Integer.getInteger("server.requestThreads", 2 * MAX_IN_FLIGHT);
+    private static final long QUEUE_TIMEOUT_MS = Long.getLong("server.queueTimeoutMs", 2000);
+    private static final long RETRY_AFTER_MS = Long.getLong("server.retryAfterMs", 500);
+    // Cada cuánto se reportan las tablas de handles de cada conexión, la compresión por acción,
+    // el pool de conexiones a la BD y las cachés del Service (0 = nunca)
+    private static final long CODEC_STATS_S = Long.getLong("server.codecStatsSeconds", 60);
+
     public static void main(String[] args) {
         try {
             Service service = Service.getInstance();
+            AdmissionControl admission = new AdmissionControl(MAX_IN_FLIGHT, QUEUE_TIMEOUT_MS, RETRY_AFTER_MS);
+            startStatsReporter();
+
+            if (ENGINE.equalsIgnoreCase("nio")) {
+                new NioServer(SYNC_PORT, service, activeClients, admission, NIO_IO_THREADS, NIO_HANDLER_THREADS).start();
+                return;
+            }
+
+            // Modo 'virtual': cada Worker corre en un hilo virtual (requiere Java 21)
+            ExecutorService virtualWorkers = null;
+            // Donde se ejecutan las peticiones (una conexión puede tener varias en curso)
+            ExecutorService requests;
+            if (ENGINE.equalsIgnoreCase("virtual")) {
+                virtualWorkers = VirtualThreads.newPerTaskExecutor("worker-");
+                requests = VirtualThreads.newPerTaskExecutor("request-");
+                VirtualThreads.startPinningMonitor();
+            } else {
+                // Como un cached pool, pero con tope: sin cola (SynchronousQueue), así que pasado el
+                // tope execute() lanza RejectedExecutionException y el Worker responde "ocupado"
+                AtomicInteger requestCount = new AtomicInteger(0);
+                requests = new ThreadPoolExecutor(0, Math.max(MAX_IN_FLIGHT + 1, REQUEST_THREADS),
+                        60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                    Thread t = new Thread(r, "request-" + requestCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+
             ServerSocket listener = new ServerSocket(SYNC_PORT);
             System.out.println(">>> Servidor escuchando en el puerto " + SYNC_PORT + "...");
 
@@ -28,11 +80,34 @@ public class Server {
                 System.out.println(">>> Worker iniciado. Clientes activos: " + currentClients);
 
                 // Pasamos el contador al Worker para que pueda decrementarlo al salir
-                Worker worker = new Worker(clientSocket, service, activeClients);
-                new Thread(worker).start();
+                Worker worker = new Worker(clientSocket, service, activeClients, admission, requests);
+                if (virtualWorkers != null) {
+                    virtualWorkers.execute(worker);
+                } else {
+                    new Thread(worker).start();
+                }
             }
         } catch (IOException e) {
             System.err.println("Error al iniciar el servidor: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static void startStatsReporter() {
+        if (CODEC_STATS_S <= 0) return;
+        Thread reporter = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(CODEC_STATS_S * 1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Worker.reportCodecStats();
+                CompressionStats.report(Compression.name(Worker.COMPRESSION));
+                System.out.println(">>> Pool de conexiones: " + Database.getInstance().getPoolStats());
+                System.out.println(">>> Cachés: " + Service.getInstance().getCacheStats());
+            }
+        }, "stats-report");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+}
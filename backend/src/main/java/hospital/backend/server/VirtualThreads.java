@@ -0,0 +1,122 @@
+package hospital.backend.server;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soporte para el modo de hilos virtuales del servidor (-Dserver.engine=virtual).
+ *
+ * El backend se sigue compilando con Java 17, así que la API de hilos virtuales se
+ * obtiene por reflexión y solo funciona si el servidor corre sobre Java 21 o superior
+ * (ver el perfil 'java21' del pom del backend).
+ *
+ * También lleva la cuenta de los eventos de "pinning" (un hilo virtual que se bloquea
+ * sin poder soltar su carrier, típicamente por E/S dentro de un bloque synchronized),
+ * usando el evento jdk.VirtualThreadPinned de JFR.
+ */
+public class VirtualThreads {
+    // Duración mínima para que JFR reporte un pinning (por defecto 20 ms, igual que JFR)
+    private static final long PINNED_THRESHOLD_MS = Long.getLong("server.virtual.pinnedThresholdMs", 20);
+    // Cada cuánto se imprime el resumen de contadores (0 = nunca)
+    private static final long REPORT_INTERVAL_S = Long.getLong("server.virtual.reportSeconds", 60);
+
+    private static final AtomicLong pinnedCount = new AtomicLong(0);
+    private static final AtomicLong pinnedNanos = new AtomicLong(0);
+    private static final AtomicLong submitFailedCount = new AtomicLong(0);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Crea un executor que lanza un hilo virtual nuevo por cada tarea.
+     * @param namePrefix Prefijo para el nombre de los hilos (ej: "worker-").
+     * @throws UnsupportedOperationException Si la JVM no soporta hilos virtuales.
+     */
+    public static ExecutorService newPerTaskExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            ThreadFactory threadFactory = (ThreadFactory) factory.invoke(builder);
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Los hilos virtuales requieren Java 21 o superior (JVM actual: "
+                    + System.getProperty("java.version") + ")", e);
+        }
+    }
+
+    /**
+     * Empieza a escuchar los eventos de JFR sobre hilos virtuales en segundo plano.
+     * Cada pinning se registra en los contadores y se imprime el frame que lo causó.
+     */
+    public static void startPinningMonitor() {
+        RecordingStream rs = new RecordingStream();
+        rs.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(PINNED_THRESHOLD_MS)).withStackTrace();
+        rs.enable("jdk.VirtualThreadSubmitFailed");
+        rs.onEvent("jdk.VirtualThreadPinned", VirtualThreads::onPinned);
+        rs.onEvent("jdk.VirtualThreadSubmitFailed", e -> submitFailedCount.incrementAndGet());
+        rs.startAsync();
+
+        if (REPORT_INTERVAL_S > 0) {
+            Thread reporter = new Thread(() -> {
+                while (true) {
+                    try {
+                        Thread.sleep(REPORT_INTERVAL_S * 1000);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    System.out.println(">>> Hilos virtuales: " + getStats());
+                }
+            }, "virtual-threads-report");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+        System.out.println(">>> Monitor de pinning activo (umbral " + PINNED_THRESHOLD_MS + " ms).");
+    }
+
+    private static void onPinned(RecordedEvent event) {
+        pinnedCount.incrementAndGet();
+        pinnedNanos.addAndGet(event.getDuration().toNanos());
+        String where = "desconocido";
+        if (event.getStackTrace() != null) {
+            // El primer frame de nuestro código es el que interesa (el resto es del JDK/driver)
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                String type = frame.getMethod().getType().getName();
+                if (type.startsWith("hospital.")) {
+                    where = type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+                    break;
+                }
+            }
+        }
+        System.err.println(">>> Pinning de " + event.getDuration().toMillis() + " ms en " + where);
+    }
+
+    // --- Contadores ---
+
+    public static long getPinnedCount() {
+        return pinnedCount.get();
+    }
+
+    public static long getPinnedMillis() {
+        return pinnedNanos.get() / 1_000_000;
+    }
+
+    public static long getSubmitFailedCount() {
+        return submitFailedCount.get();
+    }
+
+    public static String getStats() {
+        return "pinned=" + getPinnedCount() + " (" + getPinnedMillis() + " ms), submitFailed=" + getSubmitFailedCount();
+    }
+}
@@ -1,53 +1,135 @@
 package hospital.backend.server;
 
+import hospital.backend.data.ReplicaSession;
 import hospital.backend.logic.Service;
+import hospital.backend.logic.Sesion;
+import hospital.protocol.Codec;
+import hospital.protocol.Compression;
+import hospital.protocol.Frame;
 import hospital.protocol.Protocol; // Importar la clase Protocol
+import hospital.protocol.ResetPolicy;
+import hospital.protocol.ServerBusyException;
 import hospital.protocol.logic.*;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Atiende las peticiones de una conexión.
+ *
+ * Las peticiones pueden llegar en pipeline (varias seguidas sin esperar respuesta).
+ * Se decodifican en el orden de llegada, pero cada una se ejecuta como una tarea aparte
+ * y su respuesta sale apenas termina, aunque una anterior siga en curso: el cliente
+ * empareja cada respuesta con su petición por el id de la trama.
+ *
+ * Cada conexión tiene un tope de peticiones recibidas y sin responder
+ * (server.connection.maxPending): al llegar a él se deja de leer el socket hasta que
+ * alguna termine, así un cliente que manda peticiones sin parar queda frenado por TCP
+ * en lugar de ocupar un hilo por cada una.
+ */
 public class Worker implements Runnable {
     private Socket clientSocket;
     private Service service;
-    private ObjectInputStream input;
-    private ObjectOutputStream output;
+    private DataInputStream input;
+    private DataOutputStream output;
     private AtomicInteger activeClients;
+    private AdmissionControl admission;
+    private Executor requests; // Donde se ejecutan las peticiones de esta conexión
+    // Codificadores de payload de esta conexión (tienen estado, ver Codec)
+    private final Codec requestCodec = new Codec();
+    private final Codec responseCodec = new Codec();
+    // Codificar y entregar una respuesta es un solo paso: el orden en que el Codec
+    // codifica debe ser el orden en que las tramas salen por el socket.
+    // (ReentrantLock y no synchronized, para no fijar el carrier de un hilo virtual.)
+    private final ReentrantLock responseLock = new ReentrantLock();
+    private final String address; // Para identificar la conexión en los reportes
+    // Lo que este cliente escribió, para que sus lecturas no vayan a una réplica atrasada
+    private final ReplicaSession replicaSession = new ReplicaSession();
+    // Token de la sesión de esta conexión (lo asignan LOGIN y SESSION_RESUME; null = sin sesión)
+    private volatile String sessionToken;
+    // Lugares para peticiones pendientes de esta conexión (ver MAX_PENDING_PER_CONNECTION)
+    private final Semaphore pendingSlots = new Semaphore(MAX_PENDING_PER_CONNECTION);
+    private volatile Runnable onSlotFreed; // Motor NIO: reanudar la lectura del canal
 
-    // Constructor (sin cambios)
-    public Worker(Socket clientSocket, Service service, AtomicInteger activeClients) {
+    // Compresión de respuestas: algoritmo preferido (deflate, fast o none) y tamaño mínimo
+    // del payload para intentarla. Solo se aplica si el cliente la acepta en sus flags.
+    static final byte COMPRESSION = Compression.parse(System.getProperty("server.compression", "deflate"));
+    private static final int COMPRESSION_THRESHOLD = Integer.getInteger("server.compression.threshold", 4096);
+    // Máximo de operaciones en un lote (BATCH): un lote ocupa un solo turno de admisión
+    private static final int BATCH_MAX_OPERATIONS = Integer.getInteger("server.batch.maxOperations", 1000);
+    // Peticiones de una conexión recibidas y todavía sin responder; al llegar al tope se deja de leer
+    static final int MAX_PENDING_PER_CONNECTION = Math.max(1, Integer.getInteger("server.connection.maxPending", 8));
+    // Si las acciones piden una sesión vigente (false: sin autorización, p. ej. para benchmarks)
+    private static final boolean REQUIRE_SESSION =
+            Boolean.parseBoolean(System.getProperty("server.session.required", "true"));
+
+    // Conexiones vivas, para reportar el tamaño de las tablas de handles de cada una
+    private static final Set<Worker> connections = ConcurrentHashMap.newKeySet();
+
+    /** Destino de las tramas de respuesta: el socket, o la cola de salida en NIO. */
+    interface ResponseSink {
+        void send(Frame response) throws IOException;
+    }
+
+    // Constructor
+    public Worker(Socket clientSocket, Service service, AtomicInteger activeClients, AdmissionControl admission,
+                  Executor requests) {
         this.clientSocket = clientSocket;
         this.service = service;
         this.activeClients = activeClients;
+        this.admission = admission;
+        this.requests = requests;
+        this.address = clientSocket.getInetAddress().getHostAddress() + ":" + clientSocket.getPort();
+        connections.add(this);
         try {
-            this.output = new ObjectOutputStream(clientSocket.getOutputStream());
-            this.input = new ObjectInputStream(clientSocket.getInputStream());
+            this.output = new DataOutputStream(new BufferedOutputStream(clientSocket.getOutputStream()));
+            this.input = new DataInputStream(new BufferedInputStream(clientSocket.getInputStream()));
         } catch (IOException e) {
             System.err.println(Thread.currentThread().getName() + ": Error al inicializar flujos: " + e.getMessage());
         }
     }
 
+    // Constructor para el motor NIO: las tramas las lee y escribe NioServer sobre el
+    // canal, que además administra la conexión (no hay Socket ni contador que manejar aquí).
+    Worker(Service service, AdmissionControl admission, Executor requests, String address) {
+        this.service = service;
+        this.admission = admission;
+        this.requests = requests;
+        this.address = address;
+        connections.add(this);
+    }
+
     @Override
     public void run() {
         String currentThreadName = Thread.currentThread().getName();
         try {
             System.out.println(currentThreadName + ": Atendiendo peticiones...");
-            // Bucle principal: Lee la acción (Integer)
+            // Bucle principal: leer tramas y despacharlas; las respuestas las escribe
+            // cada tarea cuando termina, sin esperar a las demás
             while (true) {
-                Integer actionCode = (Integer) input.readObject();
-                System.out.println(currentThreadName + ": Código de acción recibido '" + actionCode + "'");
-                handleAction(actionCode); // Pasa el Integer
+                acquireSlot(); // Con el tope de pendientes lleno, no se lee la próxima trama
+                dispatch(Frame.read(input), response -> {
+                    response.write(output);
+                    output.flush(); // Un solo flush por respuesta
+                });
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             System.out.println(currentThreadName + ": Cliente " + clientSocket.getInetAddress().getHostAddress() + " se ha desconectado o hubo un error de lectura: " + e.getMessage());
-        } catch (ClassCastException cce) {
-            System.err.println(currentThreadName + ": Error - Se esperaba un código de acción (Integer) pero se recibió otro tipo de objeto.");
         } finally {
             closeConnection();
             int currentClients = activeClients.decrementAndGet();
@@ -55,283 +137,587 @@ public class Worker implements Runnable {
         }
     }
 
-    // Método handleAction (Usa constantes de Protocol)
-    private void handleAction(Integer actionCode) throws IOException, ClassNotFoundException {
+    /**
+     * Decodifica una trama de petición y la manda a ejecutar; la trama de respuesta (mismo
+     * código de acción y mismo id de petición) se entrega al sink cuando el handler termina.
+     * Debe llamarse en el orden en que llegan las tramas (el Codec tiene estado), y con un
+     * lugar de pendientes ya tomado (acquireSlot o tryAcquireSlot): se libera al responder.
+     * Lo usa el bucle de run() y también NioServer.
+     * @throws IOException Si el payload de la petición no se puede decodificar.
+     */
+    void dispatch(Frame request, ResponseSink sink) throws IOException {
+        int actionCode = request.getAction();
+        System.out.println(Thread.currentThread().getName() + ": Código de acción recibido '" + actionCode
+                + "' (petición " + request.getRequestId() + ")");
+        Object[] params;
+        try {
+            params = requestCodec.decode(request.getPayload());
+        } catch (ClassNotFoundException e) {
+            releaseSlot();
+            throw new IOException("Parámetros ilegibles para la acción " + actionCode, e);
+        }
+        try {
+            requests.execute(() -> {
+                ReplicaSession.bind(replicaSession);
+                try {
+                    respond(request, handleAction(actionCode, params), sink);
+                } finally {
+                    ReplicaSession.unbind();
+                    releaseSlot();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // No quedan hilos para peticiones: se rechaza como "ocupado", igual que en la admisión
+            System.err.println(Thread.currentThread().getName() + ": Código de acción '" + actionCode
+                    + "' rechazado, no hay hilos libres para peticiones.");
+            respond(request, admission.reject(), sink);
+            releaseSlot();
+        }
+    }
+
+    // --- Tope de peticiones pendientes por conexión ---
+
+    // Espera un lugar (motor de hilos: mientras tanto no se lee el socket)
+    private void acquireSlot() throws IOException {
+        try {
+            pendingSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido esperando lugar para otra petición");
+        }
+    }
+
+    /** Toma un lugar si hay (motor NIO: si no hay, deja de leer el canal). */
+    boolean tryAcquireSlot() {
+        return pendingSlots.tryAcquire();
+    }
+
+    /** Devuelve un lugar tomado con tryAcquireSlot que al final no se usó (no había trama completa). */
+    void returnUnusedSlot() {
+        pendingSlots.release();
+    }
+
+    /** Se llama cada vez que una petición termina y libera su lugar. */
+    void setOnSlotFreed(Runnable onSlotFreed) {
+        this.onSlotFreed = onSlotFreed;
+    }
+
+    private void releaseSlot() {
+        pendingSlots.release();
+        Runnable resume = onSlotFreed;
+        if (resume != null) {
+            resume.run();
+        }
+    }
+
+    // Envía la respuesta de una petición
+    private void respond(Frame request, Object response, ResponseSink sink) {
+        try {
+            sendFrame(request, response, sink);
+        } catch (IOException e) {
+            // La conexión se cerró mientras la petición se ejecutaba: no hay a quién responder
+            System.err.println(Thread.currentThread().getName() + ": No se pudo enviar la respuesta a la petición "
+                    + request.getRequestId() + ": " + e.getMessage());
+        }
+    }
+
+    // Codifica (y si conviene comprime) un valor y lo entrega como trama de respuesta
+    private void sendFrame(Frame request, Object response, ResponseSink sink) throws IOException {
+        responseLock.lock();
+        try {
+            byte[] payload = responseCodec.encode(response);
+            int rawSize = payload.length;
+            byte flags = 0;
+            long nanos = 0;
+            byte algorithm = chooseCompression(request.getFlags());
+            if (algorithm != 0 && rawSize >= COMPRESSION_THRESHOLD) {
+                long start = System.nanoTime();
+                byte[] compressed = Compression.compress(payload, algorithm);
+                nanos = System.nanoTime() - start;
+                if (compressed.length < rawSize) { // Si no achica, no vale la pena descomprimir
+                    payload = compressed;
+                    flags = algorithm;
+                }
+            }
+            CompressionStats.record(request.getAction(), flags, rawSize, payload.length, nanos);
+            sink.send(new Frame(request.getAction(), request.getRequestId(), flags, payload));
+        } finally {
+            responseLock.unlock();
+        }
+    }
+
+    // Método handleAction (Usa constantes de Protocol): devuelve la respuesta a enviar.
+    private Object handleAction(int actionCode, Object[] params) {
         String currentThreadName = Thread.currentThread().getName();
         System.out.println(currentThreadName + ": Procesando código de acción '" + actionCode + "'...");
+        boolean admitted = false;
+        Object response;
         try {
-            // Usa el actionCode (Integer) y las constantes de Protocol (int)
-            switch (actionCode) {
-                case Protocol.LOGIN: handleAutenticar(); break;
-                case Protocol.CHPASS: handleCambiarClave(); break;
-
-                // --- Medicamentos ---
-                case Protocol.MEDICAMENTO_CREATE: handleCreateMedicamento(); break;
-                case Protocol.MEDICAMENTO_READ: handleReadMedicamento(); break;
-                case Protocol.MEDICAMENTO_UPDATE: handleUpdateMedicamento(); break;
-                case Protocol.MEDICAMENTO_DELETE: handleDeleteMedicamento(); break;
-                case Protocol.MEDICAMENTO_SEARCH: handleSearchMedicamentos(); break;
-                case Protocol.MEDICAMENTO_GET_ALL: handleGetMedicamentos(); break;
-
-                // --- Pacientes ---
-                case Protocol.PACIENTE_CREATE: handleCreatePaciente(); break;
-                case Protocol.PACIENTE_READ: handleReadPaciente(); break;
-                case Protocol.PACIENTE_UPDATE: handleUpdatePaciente(); break;
-                case Protocol.PACIENTE_DELETE: handleDeletePaciente(); break;
-                case Protocol.PACIENTE_SEARCH: handleSearchPacientes(); break;
-                case Protocol.PACIENTE_GET_ALL: handleGetPacientes(); break;
-
-                // --- Médicos ---
-                case Protocol.MEDICO_CREATE: handleCreateMedico(); break;
-                case Protocol.MEDICO_READ: handleReadMedico(); break;
-                case Protocol.MEDICO_UPDATE: handleUpdateMedico(); break;
-                case Protocol.MEDICO_DELETE: handleDeleteMedico(); break;
-                case Protocol.MEDICO_SEARCH: handleSearchMedicos(); break;
-                case Protocol.MEDICO_GET_ALL: handleGetMedicos(); break;
-
-                // --- Farmaceutas ---
-                case Protocol.FARMACEUTA_CREATE: handleCreateFarmaceuta(); break;
-                case Protocol.FARMACEUTA_READ: handleReadFarmaceuta(); break;
-                case Protocol.FARMACEUTA_UPDATE: handleUpdateFarmaceuta(); break;
-                case Protocol.FARMACEUTA_DELETE: handleDeleteFarmaceuta(); break;
-                case Protocol.FARMACEUTA_SEARCH: handleSearchFarmaceutas(); break;
-                case Protocol.FARMACEUTA_GET_ALL: handleGetFarmaceutas(); break;
-
-                // --- Recetas ---
-                case Protocol.RECETA_CREATE: handleCreateReceta(); break;
-                case Protocol.RECETA_UPDATE_ESTADO: handleUpdateRecetaEstado(); break;
-                case Protocol.RECETA_GET_DESPACHO: handleSearchRecetasDespacho(); break;
-                case Protocol.RECETA_GET_HISTORICO: handleFindRecetasHistorico(); break;
-                case Protocol.RECETA_GET_ALL: handleGetRecetas(); break;
-
-                // --- Dashboard ---
-                case Protocol.DASHBOARD_GET_RECETAS_ESTADO: handleContarRecetasPorEstado(); break;
-                case Protocol.DASHBOARD_GET_MEDICAMENTOS_MES: handleContarMedicamentosPorMes(); break;
-
-                // --- Chat ---
-                case Protocol.CHAT_SEND: handleSendMessage(); break;
-
-                // --- Acción Desconocida ---
-                default:
-                    System.err.println(currentThreadName + ": Código de acción desconocido recibido: " + actionCode);
-                    output.writeObject(new Exception("Acción desconocida: " + actionCode));
-                    break;
-            }
+            // Turno del control de admisión: los parámetros ya vienen completos en la trama,
+            // así que rechazar aquí no deja nada pendiente en la conexión.
+            admission.acquire();
+            admitted = true;
+            response = execute(actionCode, params);
             System.out.println(currentThreadName + ": Código de acción '" + actionCode + "' procesado.");
+        } catch (ServerBusyException busy) {
+            // Rechazo por saturación: la petición no se ejecutó, el cliente puede reintentar
+            System.err.println(currentThreadName + ": Código de acción '" + actionCode + "' rechazado, servidor ocupado ("
+                    + admission.getInFlight() + " en curso, " + admission.getQueued() + " en cola).");
+            response = busy;
         } catch (Exception e) {
             System.err.println(currentThreadName + ": Error procesando código de acción '" + actionCode + "': " + e.getMessage());
             e.printStackTrace();
-            // Enviamos la excepción, pero asegurándonos que sea Serializable
-            // Si la excepción original no lo es, enviamos una genérica.
-            if (e instanceof java.io.Serializable) {
-                output.writeObject(e);
-            } else {
-                output.writeObject(new Exception("Error interno del servidor: " + e.getMessage()));
+            response = errorResponse(e);
+        } finally {
+            if (admitted) {
+                admission.release();
             }
         }
+        return response;
+    }
+
+    // Ejecuta una acción (sola o como parte de un lote) y devuelve su respuesta
+    private Object execute(int actionCode, Object[] params) throws Exception {
+        Object response;
+        authorize(actionCode);
+        // Usa el actionCode y las constantes de Protocol (int)
+        switch (actionCode) {
+            case Protocol.LOGIN: response = handleAutenticar(params); break;
+            case Protocol.CHPASS: response = handleCambiarClave(params); break;
+            case Protocol.SESSION_RESUME: response = handleReanudarSesion(params); break;
+            case Protocol.LOGOUT: response = handleCerrarSesion(params); break;
+
+            // --- Medicamentos ---
+            case Protocol.MEDICAMENTO_CREATE: response = handleCreateMedicamento(params); break;
+            case Protocol.MEDICAMENTO_READ: response = handleReadMedicamento(params); break;
+            case Protocol.MEDICAMENTO_UPDATE: response = handleUpdateMedicamento(params); break;
+            case Protocol.MEDICAMENTO_DELETE: response = handleDeleteMedicamento(params); break;
+            case Protocol.MEDICAMENTO_SEARCH: response = handleSearchMedicamentos(params); break;
+            case Protocol.MEDICAMENTO_GET_ALL: response = handleGetMedicamentos(params); break;
+            case Protocol.MEDICAMENTO_SEARCH_PAGE: response = handleSearchMedicamentosPage(params); break;
+
+            // --- Pacientes ---
+            case Protocol.PACIENTE_CREATE: response = handleCreatePaciente(params); break;
+            case Protocol.PACIENTE_READ: response = handleReadPaciente(params); break;
+            case Protocol.PACIENTE_UPDATE: response = handleUpdatePaciente(params); break;
+            case Protocol.PACIENTE_DELETE: response = handleDeletePaciente(params); break;
+            case Protocol.PACIENTE_SEARCH: response = handleSearchPacientes(params); break;
+            case Protocol.PACIENTE_GET_ALL: response = handleGetPacientes(params); break;
+            case Protocol.PACIENTE_SEARCH_PAGE: response = handleSearchPacientesPage(params); break;
+
+            // --- Médicos ---
+            case Protocol.MEDICO_CREATE: response = handleCreateMedico(params); break;
+            case Protocol.MEDICO_READ: response = handleReadMedico(params); break;
+            case Protocol.MEDICO_UPDATE: response = handleUpdateMedico(params); break;
+            case Protocol.MEDICO_DELETE: response = handleDeleteMedico(params); break;
+            case Protocol.MEDICO_SEARCH: response = handleSearchMedicos(params); break;
+            case Protocol.MEDICO_GET_ALL: response = handleGetMedicos(params); break;
+            case Protocol.MEDICO_SEARCH_PAGE: response = handleSearchMedicosPage(params); break;
+
+            // --- Farmaceutas ---
+            case Protocol.FARMACEUTA_CREATE: response = handleCreateFarmaceuta(params); break;
+            case Protocol.FARMACEUTA_READ: response = handleReadFarmaceuta(params); break;
+            case Protocol.FARMACEUTA_UPDATE: response = handleUpdateFarmaceuta(params); break;
+            case Protocol.FARMACEUTA_DELETE: response = handleDeleteFarmaceuta(params); break;
+            case Protocol.FARMACEUTA_SEARCH: response = handleSearchFarmaceutas(params); break;
+            case Protocol.FARMACEUTA_GET_ALL: response = handleGetFarmaceutas(params); break;
+            case Protocol.FARMACEUTA_SEARCH_PAGE: response = handleSearchFarmaceutasPage(params); break;
+
+            // --- Recetas ---
+            case Protocol.RECETA_CREATE: response = handleCreateReceta(params); break;
+            case Protocol.RECETA_UPDATE_ESTADO: response = handleUpdateRecetaEstado(params); break;
+            case Protocol.RECETA_GET_DESPACHO: response = handleSearchRecetasDespacho(params); break;
+            case Protocol.RECETA_GET_HISTORICO: response = handleFindRecetasHistorico(params); break;
+            case Protocol.RECETA_GET_ALL: response = handleGetRecetas(params); break;
+            case Protocol.RECETA_GET_HISTORICO_PAGE: response = handleFindRecetasHistoricoPage(params); break;
+
+            // --- Dashboard ---
+            case Protocol.DASHBOARD_GET_RECETAS_ESTADO: response = handleContarRecetasPorEstado(params); break;
+            case Protocol.DASHBOARD_GET_MEDICAMENTOS_MES: response = handleContarMedicamentosPorMes(params); break;
+
+            // --- Chat ---
+            case Protocol.CHAT_SEND: response = handleSendMessage(params); break;
+
+            // --- Lote ---
+            case Protocol.BATCH: response = handleBatch(params); break;
+
+            // --- Acción Desconocida ---
+            default:
+                System.err.println(Thread.currentThread().getName() + ": Código de acción desconocido recibido: " + actionCode);
+                response = new Exception("Acción desconocida: " + actionCode);
+                break;
+        }
+        return response;
+    }
+
+    // Las acciones piden una sesión vigente en la conexión, salvo las que la abren o la cierran
+    // y CHPASS (que verifica la clave actual). Se busca en memoria: no consulta la BD.
+    // Solo comprueba que haya sesión, no el rol: cualquier usuario autenticado puede pedir
+    // cualquier acción (los permisos por rol los sigue aplicando la interfaz del cliente).
+    private void authorize(int actionCode) throws Exception {
+        if (!REQUIRE_SESSION) return;
+        switch (actionCode) {
+            case Protocol.LOGIN:
+            case Protocol.SESSION_RESUME:
+            case Protocol.LOGOUT:
+            case Protocol.CHPASS:
+                return;
+            default:
+                if (service.usuarioDeSesion(sessionToken) == null) {
+                    throw new Exception("No hay una sesión iniciada o ya venció, ingrese de nuevo.");
+                }
+        }
+    }
+
+    // La excepción como respuesta, asegurándonos que sea Serializable:
+    // si la excepción original no lo es, enviamos una genérica.
+    private static Object errorResponse(Exception e) {
+        if (e instanceof java.io.Serializable) {
+            return e;
+        }
+        return new Exception("Error interno del servidor: " + e.getMessage());
     }
 
     // =======================================================
     // ===          HANDLERS PARA CADA ACCIÓN              ===
     // =======================================================
-    // (Leen parámetros, llaman al Service y envían respuesta OK o Exception)
+    // (Toman sus parámetros de la trama, llaman al Service y devuelven la respuesta: OK, el dato o Exception)
+
+    private Object handleAutenticar(Object[] params) throws Exception {
+        String id = (String) params[0];
+        String clave = (String) params[1];
+        Sesion sesion = service.iniciarSesion(id, clave);
+        service.cerrarSesion(sessionToken); // Un nuevo LOGIN reemplaza la sesión anterior de la conexión
+        sessionToken = sesion.getToken();
+        return sesion.getUsuario(); // Envía Usuario (con el token de la sesión) o lanza Exception
+    }
 
-    private void handleAutenticar() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
-        String clave = (String) input.readObject();
-        Usuario usuario = service.autenticar(id, clave);
-        output.writeObject(usuario); // Envía Usuario o lanza Exception
+    private Object handleReanudarSesion(Object[] params) throws Exception {
+        String token = (String) params[0];
+        Usuario usuario = service.reanudarSesion(token);
+        sessionToken = token;
+        return usuario;
     }
 
-    private void handleCambiarClave() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
-        String actual = (String) input.readObject();
-        String nueva = (String) input.readObject();
+    private Object handleCerrarSesion(Object[] params) {
+        service.cerrarSesion(sessionToken);
+        sessionToken = null;
+        return Protocol.OK;
+    }
+
+    private Object handleCambiarClave(Object[] params) throws Exception {
+        String id = (String) params[0];
+        String actual = (String) params[1];
+        String nueva = (String) params[2];
         service.cambiarClave(id, actual, nueva); // Lanza Exception si falla
-        output.writeObject(Protocol.OK); // Envía OK si tiene éxito
+        return Protocol.OK; // Envía OK si tiene éxito
     }
 
     // --- Medicamentos Handlers ---
-    private void handleCreateMedicamento() throws IOException, ClassNotFoundException, Exception {
-        Medicamento med = (Medicamento) input.readObject();
+    private Object handleCreateMedicamento(Object[] params) throws Exception {
+        Medicamento med = (Medicamento) params[0];
         service.createMedicamento(med);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleUpdateMedicamento() throws IOException, ClassNotFoundException, Exception {
-        Medicamento med = (Medicamento) input.readObject();
+    private Object handleUpdateMedicamento(Object[] params) throws Exception {
+        Medicamento med = (Medicamento) params[0];
         service.updateMedicamento(med);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleDeleteMedicamento() throws IOException, ClassNotFoundException, Exception {
-        String codigo = (String) input.readObject();
+    private Object handleDeleteMedicamento(Object[] params) throws Exception {
+        String codigo = (String) params[0];
         service.deleteMedicamento(codigo);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleReadMedicamento() throws IOException, ClassNotFoundException, Exception {
-        String codigo = (String) input.readObject();
+    private Object handleReadMedicamento(Object[] params) throws Exception {
+        String codigo = (String) params[0];
         Medicamento med = service.readMedicamento(codigo);
-        output.writeObject(med); // Envía Medicamento o lanza Exception
+        return med; // Envía Medicamento o lanza Exception
     }
-    private void handleGetMedicamentos() throws IOException, Exception {
+    private Object handleGetMedicamentos(Object[] params) throws Exception {
         List<Medicamento> list = service.getMedicamentos();
-        output.writeObject(list);
+        return list;
     }
-    private void handleSearchMedicamentos() throws IOException, ClassNotFoundException, Exception {
-        String filtro = (String) input.readObject();
+    private Object handleSearchMedicamentos(Object[] params) throws Exception {
+        String filtro = (String) params[0];
         List<Medicamento> list = service.searchMedicamentos(filtro);
-        output.writeObject(list);
+        return list;
+    }
+    private Object handleSearchMedicamentosPage(Object[] params) throws Exception {
+        String filtro = (String) params[0];
+        int pageSize = (Integer) params[1];
+        String cursor = (String) params[2];
+        return service.searchMedicamentosPage(filtro, pageSize, cursor);
     }
 
     // --- Pacientes Handlers ---
-    private void handleCreatePaciente() throws IOException, ClassNotFoundException, Exception {
-        Paciente p = (Paciente) input.readObject();
+    private Object handleCreatePaciente(Object[] params) throws Exception {
+        Paciente p = (Paciente) params[0];
         service.createPaciente(p);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleReadPaciente() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
+    private Object handleReadPaciente(Object[] params) throws Exception {
+        String id = (String) params[0];
         Paciente p = service.readPaciente(id);
-        output.writeObject(p);
+        return p;
     }
-    private void handleUpdatePaciente() throws IOException, ClassNotFoundException, Exception {
-        Paciente p = (Paciente) input.readObject();
+    private Object handleUpdatePaciente(Object[] params) throws Exception {
+        Paciente p = (Paciente) params[0];
         service.updatePaciente(p);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleDeletePaciente() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
+    private Object handleDeletePaciente(Object[] params) throws Exception {
+        String id = (String) params[0];
         service.deletePaciente(id);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleGetPacientes() throws IOException, Exception {
+    private Object handleGetPacientes(Object[] params) throws Exception {
         List<Paciente> list = service.getPacientes();
-        output.writeObject(list);
+        return list;
     }
-    private void handleSearchPacientes() throws IOException, ClassNotFoundException, Exception {
-        String filtro = (String) input.readObject();
+    private Object handleSearchPacientes(Object[] params) throws Exception {
+        String filtro = (String) params[0];
         List<Paciente> list = service.searchPacientes(filtro);
-        output.writeObject(list);
+        return list;
+    }
+    private Object handleSearchPacientesPage(Object[] params) throws Exception {
+        String filtro = (String) params[0];
+        int pageSize = (Integer) params[1];
+        String cursor = (String) params[2];
+        return service.searchPacientesPage(filtro, pageSize, cursor);
     }
 
     // --- Médicos Handlers ---
-    private void handleCreateMedico() throws IOException, ClassNotFoundException, Exception {
-        Medico m = (Medico) input.readObject();
+    private Object handleCreateMedico(Object[] params) throws Exception {
+        Medico m = (Medico) params[0];
         service.createMedico(m);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleReadMedico() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
+    private Object handleReadMedico(Object[] params) throws Exception {
+        String id = (String) params[0];
         Medico m = service.readMedico(id);
-        output.writeObject(m);
+        return m;
     }
-    private void handleUpdateMedico() throws IOException, ClassNotFoundException, Exception {
-        Medico m = (Medico) input.readObject();
+    private Object handleUpdateMedico(Object[] params) throws Exception {
+        Medico m = (Medico) params[0];
         service.updateMedico(m);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleDeleteMedico() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
+    private Object handleDeleteMedico(Object[] params) throws Exception {
+        String id = (String) params[0];
         service.deleteMedico(id);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleGetMedicos() throws IOException, Exception {
+    private Object handleGetMedicos(Object[] params) throws Exception {
         List<Medico> list = service.getMedicos();
-        output.writeObject(list);
+        return list;
     }
-    private void handleSearchMedicos() throws IOException, ClassNotFoundException, Exception {
-        String filtro = (String) input.readObject();
+    private Object handleSearchMedicos(Object[] params) throws Exception {
+        String filtro = (String) params[0];
         List<Medico> list = service.searchMedicos(filtro);
-        output.writeObject(list);
+        return list;
+    }
+    private Object handleSearchMedicosPage(Object[] params) throws Exception {
+        String filtro = (String) params[0];
+        int pageSize = (Integer) params[1];
+        String cursor = (String) params[2];
+        return service.searchMedicosPage(filtro, pageSize, cursor);
     }
 
 
     // --- Farmaceutas Handlers ---
-    private void handleCreateFarmaceuta() throws IOException, ClassNotFoundException, Exception {
-        Farmaceuta f = (Farmaceuta) input.readObject();
+    private Object handleCreateFarmaceuta(Object[] params) throws Exception {
+        Farmaceuta f = (Farmaceuta) params[0];
         service.createFarmaceuta(f);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleReadFarmaceuta() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
+    private Object handleReadFarmaceuta(Object[] params) throws Exception {
+        String id = (String) params[0];
         Farmaceuta f = service.readFarmaceuta(id);
-        output.writeObject(f);
+        return f;
     }
-    private void handleUpdateFarmaceuta() throws IOException, ClassNotFoundException, Exception {
-        Farmaceuta f = (Farmaceuta) input.readObject();
+    private Object handleUpdateFarmaceuta(Object[] params) throws Exception {
+        Farmaceuta f = (Farmaceuta) params[0];
         service.updateFarmaceuta(f);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleDeleteFarmaceuta() throws IOException, ClassNotFoundException, Exception {
-        String id = (String) input.readObject();
+    private Object handleDeleteFarmaceuta(Object[] params) throws Exception {
+        String id = (String) params[0];
         service.deleteFarmaceuta(id);
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleGetFarmaceutas() throws IOException, Exception {
+    private Object handleGetFarmaceutas(Object[] params) throws Exception {
         List<Farmaceuta> list = service.getFarmaceutas();
-        output.writeObject(list);
+        return list;
     }
-    private void handleSearchFarmaceutas() throws IOException, ClassNotFoundException, Exception {
-        String filtro = (String) input.readObject();
+    private Object handleSearchFarmaceutas(Object[] params) throws Exception {
+        String filtro = (String) params[0];
         List<Farmaceuta> list = service.searchFarmaceutas(filtro);
-        output.writeObject(list);
+        return list;
+    }
+    private Object handleSearchFarmaceutasPage(Object[] params) throws Exception {
+        String filtro = (String) params[0];
+        int pageSize = (Integer) params[1];
+        String cursor = (String) params[2];
+        return service.searchFarmaceutasPage(filtro, pageSize, cursor);
     }
 
     // --- Recetas Handlers ---
-    private void handleCreateReceta() throws IOException, ClassNotFoundException, Exception {
-        Receta r = (Receta) input.readObject();
+    private Object handleCreateReceta(Object[] params) throws Exception {
+        Receta r = (Receta) params[0];
 
         // CAMBIO: Capturar la receta creada que devuelve el service
         Receta recetaCreada = service.createReceta(r);
 
         // CAMBIO: Enviar el objeto 'Receta' en lugar de 'Protocol.OK'
-        output.writeObject(recetaCreada);
+        return recetaCreada;
     }
-    private void handleUpdateRecetaEstado() throws IOException, ClassNotFoundException, Exception {
-        String codigo = (String) input.readObject();
-        EstadoReceta estado = (EstadoReceta) input.readObject();
+    private Object handleUpdateRecetaEstado(Object[] params) throws Exception {
+        String codigo = (String) params[0];
+        EstadoReceta estado = (EstadoReceta) params[1];
         service.updateRecetaEstado(codigo, estado); // Aún no implementado en Service
-        output.writeObject(Protocol.OK);
+        return Protocol.OK;
     }
-    private void handleSearchRecetasDespacho() throws IOException, ClassNotFoundException, Exception {
-        String filtro = (String) input.readObject();
+    private Object handleSearchRecetasDespacho(Object[] params) throws Exception {
+        String filtro = (String) params[0];
         List<Receta> list = service.searchRecetasDespacho(filtro); // Aún no implementado en Service
-        output.writeObject(list);
+        return list;
+    }
+    private Object handleFindRecetasHistorico(Object[] params) throws Exception {
+        String filtro = (String) params[0];
+        List<Receta> list = service.findRecetasHistorico(filtro);
+        return list;
     }
-    private void handleFindRecetasHistorico() throws IOException, ClassNotFoundException, Exception {
-        String filtro = (String) input.readObject();
-        List<Receta> list = service.findRecetasHistorico(filtro); // Aún no implementado en Service
-        output.writeObject(list);
+    private Object handleFindRecetasHistoricoPage(Object[] params) throws Exception {
+        String filtro = (String) params[0];
+        int pageSize = (Integer) params[1];
+        String cursor = (String) params[2];
+        return service.findRecetasHistoricoPage(filtro, pageSize, cursor);
     }
-    private void handleGetRecetas() throws IOException, Exception {
-        List<Receta> list = service.getRecetas(); // Aún no implementado en Service
-        output.writeObject(list);
+    private Object handleGetRecetas(Object[] params) throws Exception {
+        List<Receta> list = service.getRecetas();
+        return list;
     }
 
     // --- Dashboard Handlers ---
-    private void handleContarRecetasPorEstado() throws IOException, Exception {
+    private Object handleContarRecetasPorEstado(Object[] params) throws Exception {
         Map<String, Integer> map = service.contarRecetasPorEstado(); // Aún no implementado en Service
-        output.writeObject(map);
+        return map;
     }
-    private void handleContarMedicamentosPorMes() throws IOException, ClassNotFoundException, Exception {
-        Date desde = (Date) input.readObject();
-        Date hasta = (Date) input.readObject();
-        List<String> nombres = (List<String>) input.readObject();
+    private Object handleContarMedicamentosPorMes(Object[] params) throws Exception {
+        Date desde = (Date) params[0];
+        Date hasta = (Date) params[1];
+        List<String> nombres = (List<String>) params[2];
         Map<String, Integer> map = service.contarMedicamentosPorMes(desde, hasta, nombres); // Aún no implementado en Service
-        output.writeObject(map);
+        return map;
+    }
+
+    // --- Lote Handler ---
+    // Ejecuta las operaciones en orden con los mismos handlers que si llegaran sueltas.
+    // Sin transacción, cada una responde lo suyo (el dato, OK o su Exception) y una falla
+    // no detiene a las siguientes. Con transacción, la primera falla deshace todo el lote.
+    private Object handleBatch(Object[] params) throws Exception {
+        boolean transaccional = (Boolean) params[0];
+        List<?> recibidas = (List<?>) params[1];
+        if (recibidas.size() > BATCH_MAX_OPERATIONS) {
+            throw new Exception("El lote tiene " + recibidas.size() + " operaciones; el máximo es " + BATCH_MAX_OPERATIONS);
+        }
+        // Cada operación es una lista [código de acción, parámetros...]: se revisa una por una
+        List<List<?>> operaciones = new ArrayList<>(recibidas.size());
+        for (Object operacion : recibidas) {
+            if (!(operacion instanceof List) || ((List<?>) operacion).isEmpty()) {
+                throw new Exception("Operación de lote mal formada: " + operacion);
+            }
+            operaciones.add((List<?>) operacion);
+        }
+        System.out.println(Thread.currentThread().getName() + ": Lote de " + operaciones.size() + " operaciones"
+                + (transaccional ? " (transaccional)" : ""));
+        if (transaccional) {
+            return service.inTransaction(() -> runBatch(operaciones, true));
+        }
+        return runBatch(operaciones, false);
+    }
+
+    private List<Object> runBatch(List<List<?>> operaciones, boolean stopOnError) throws Exception {
+        List<Object> results = new ArrayList<>(operaciones.size());
+        for (int i = 0; i < operaciones.size(); i++) {
+            List<?> operacion = operaciones.get(i);
+            Object result;
+            try {
+                int actionCode = (Integer) operacion.get(0);
+                switch (actionCode) {
+                    case Protocol.BATCH:
+                        throw new Exception("Un lote no puede contener otro lote.");
+                    // La sesión de la conexión no cambia a mitad de un lote (ni se deshace con él)
+                    case Protocol.LOGIN:
+                    case Protocol.SESSION_RESUME:
+                    case Protocol.LOGOUT:
+                        throw new Exception("Un lote no puede abrir ni cerrar la sesión.");
+                }
+                Object[] opParams = operacion.subList(1, operacion.size()).toArray();
+                result = execute(actionCode, opParams);
+            } catch (Exception e) {
+                result = errorResponse(e);
+            }
+            if (result instanceof Exception) {
+                Exception error = (Exception) result;
+                if (stopOnError) {
+                    throw new Exception("Operación " + (i + 1) + " del lote falló, se deshizo todo el lote: "
+                            + error.getMessage(), error);
+                }
+                System.err.println(Thread.currentThread().getName() + ": Operación " + (i + 1) + " del lote falló: "
+                        + error.getMessage());
+            }
+            results.add(result);
+        }
+        return results;
     }
 
     // --- Chat Handler ---
-    private void handleSendMessage() throws IOException, ClassNotFoundException, Exception {
-        String recipientId = (String) input.readObject();
-        String message = (String) input.readObject();
+    private Object handleSendMessage(Object[] params) throws Exception {
+        String recipientId = (String) params[0];
+        String message = (String) params[1];
         // TODO: Llamar a una lógica en el Server o Service para enviar el mensaje
         System.out.println("Mensaje recibido para " + recipientId + ": " + message);
-        // output.writeObject(Protocol.OK); // Podrías confirmar si quieres
+        // return Protocol.OK; // Podrías confirmar si quieres
         throw new UnsupportedOperationException("handleSendMessage aún no implementado"); // Temporal
     }
 
+    // --- Compresión de respuestas ---
+    // El algoritmo preferido si el cliente lo acepta; si no, cualquiera que acepte
+    private static byte chooseCompression(byte requestFlags) {
+        if (COMPRESSION == 0) return 0;
+        if (Compression.accepts(requestFlags, COMPRESSION)) return COMPRESSION;
+        if (Compression.accepts(requestFlags, Compression.DEFLATE)) return Compression.DEFLATE;
+        if (Compression.accepts(requestFlags, Compression.FAST)) return Compression.FAST;
+        return 0;
+    }
+
+    // --- Métricas de los flujos de objetos ---
+    /** Estado de los flujos de objetos de esta conexión (tablas de handles y resets). */
+    String getCodecStats() {
+        return address + " -> peticiones: " + requestCodec.getStats() + " | respuestas: " + responseCodec.getStats();
+    }
+
+    /** Imprime las métricas de los flujos de objetos de todas las conexiones vivas. */
+    static void reportCodecStats() {
+        if (connections.isEmpty()) return;
+        System.out.println(">>> Tablas de handles (" + connections.size() + " conexiones, reset="
+                + ResetPolicy.fromSystem() + "):");
+        for (Worker worker : connections) {
+            System.out.println(">>>   " + worker.getCodecStats());
+        }
+    }
+
     // --- Cierre de Conexión ---
+    // La conexión terminó: deja de figurar en los reportes
+    void closed() {
+        connections.remove(this);
+        System.out.println(Thread.currentThread().getName() + ": Flujos de objetos al cerrar " + getCodecStats());
+    }
+
     private void closeConnection() {
+        closed();
         try {
             if (input != null) input.close();
             if (output != null) output.close();
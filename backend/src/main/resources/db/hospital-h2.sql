@@ -0,0 +1,74 @@
+-- =================================================================
+-- ESQUEMA DE LA BD EMBEBIDA (H2 en modo MySQL, perfil -Ddb.profile=h2)
+-- =================================================================
+-- Las mismas tablas que HospitalBD.sql, para correr el servidor, las pruebas de carga y los
+-- benchmarks sin instalar MySQL. Lo ejecuta EmbeddedDatabase al arrancar; los datos son
+-- sintéticos y los genera EmbeddedDatabase.
+--
+-- Diferencias con HospitalBD.sql:
+-- - IF NOT EXISTS: con una BD H2 en archivo, el esquema se crea una sola vez.
+-- - Sin índices FULLTEXT (H2 no tiene MATCH ... AGAINST): las búsquedas usan el modo like.
+-- - Sin intercalación _ci: la URL de H2 lleva IGNORECASE=TRUE.
+
+CREATE TABLE IF NOT EXISTS Usuario (
+    id VARCHAR(50) PRIMARY KEY,
+    clave VARCHAR(255) NOT NULL,
+    nombre VARCHAR(100) NOT NULL,
+    tipo VARCHAR(20) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS Paciente (
+    id VARCHAR(50) PRIMARY KEY,
+    nombre VARCHAR(100) NOT NULL,
+    fechaNacimiento DATE,
+    telefono VARCHAR(20)
+);
+
+CREATE TABLE IF NOT EXISTS Medicamento (
+    codigo VARCHAR(50) PRIMARY KEY,
+    nombre VARCHAR(100) NOT NULL,
+    presentacion VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS MedicoDetalle (
+    id_medico VARCHAR(50) PRIMARY KEY,
+    especialidad VARCHAR(100) NOT NULL,
+    FOREIGN KEY (id_medico) REFERENCES Usuario(id) ON DELETE CASCADE ON UPDATE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS Receta (
+    codigo VARCHAR(50) PRIMARY KEY,
+    id_paciente VARCHAR(50) NOT NULL,
+    id_medico VARCHAR(50) NOT NULL,
+    fecha_confeccion DATETIME NOT NULL,
+    fecha_retiro DATETIME,
+    estado VARCHAR(20) NOT NULL,
+    FOREIGN KEY (id_paciente) REFERENCES Paciente(id),
+    FOREIGN KEY (id_medico) REFERENCES Usuario(id)
+);
+
+CREATE TABLE IF NOT EXISTS LineaDetalle (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    codigo_receta VARCHAR(50) NOT NULL,
+    codigo_medicamento VARCHAR(50) NOT NULL,
+    cantidad INT NOT NULL,
+    indicaciones VARCHAR(255),
+    duracion_tratamiento INT,
+    FOREIGN KEY (codigo_receta) REFERENCES Receta(codigo) ON DELETE CASCADE,
+    FOREIGN KEY (codigo_medicamento) REFERENCES Medicamento(codigo)
+);
+
+CREATE TABLE IF NOT EXISTS ConsumoMensual (
+    periodo INT NOT NULL,
+    codigo_medicamento VARCHAR(50) NOT NULL,
+    cantidad INT NOT NULL,
+    PRIMARY KEY (periodo, codigo_medicamento),
+    FOREIGN KEY (codigo_medicamento) REFERENCES Medicamento(codigo)
+);
+
+-- Los mismos índices btree que HospitalBD.sql (paso 5)
+CREATE INDEX IF NOT EXISTS idx_paciente_nombre ON Paciente (nombre, id);
+CREATE INDEX IF NOT EXISTS idx_usuario_tipo_nombre ON Usuario (tipo, nombre, id);
+CREATE INDEX IF NOT EXISTS idx_medicamento_nombre ON Medicamento (nombre, codigo);
+CREATE INDEX IF NOT EXISTS idx_receta_fecha ON Receta (fecha_confeccion, codigo);
+CREATE INDEX IF NOT EXISTS idx_receta_estado ON Receta (estado);
@@ -1,5 +1,6 @@
 package hospital.frontend.application;
 
+import hospital.frontend.logic.Service;
 import hospital.frontend.logic.Sesion;
 import hospital.frontend.presentation.login.Controller;
 import hospital.frontend.presentation.login.Model;
@@ -56,6 +57,17 @@ public class Application {
         window.setContentPane(principalView.getPanel());
         window.setSize(900, 700);
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        window.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                // Que la sesión no quede abierta en el servidor hasta que venza
+                try {
+                    Service.getInstance().cerrarSesion();
+                } catch (Exception ex) {
+                    System.err.println("No se pudo cerrar la sesión: " + ex.getMessage());
+                }
+            }
+        });
         window.setLocationRelativeTo(null);
         window.setVisible(true);
     }
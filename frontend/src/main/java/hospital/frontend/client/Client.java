@@ -1,21 +1,49 @@
 package hospital.frontend.client; // Paquete correcto en el frontend
 
+import hospital.protocol.Codec;
+import hospital.protocol.Compression;
+import hospital.protocol.Frame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException; // Para manejar error de host desconocido
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Gestiona la conexión y comunicación Sincrónica con el servidor.
- * Encapsula los detalles del Socket y los flujos de objetos.
+ * Encapsula los detalles del Socket y del protocolo de tramas (Frame + Codec):
+ * cada petición sale como una sola trama con un único flush.
+ *
+ * La conexión es multiplexada: muchos hilos (el EDT, varios SwingWorker) pueden usar
+ * el mismo Client a la vez. Cada petición lleva su propio id y devuelve un
+ * CompletableFuture; un único hilo lector recibe todas las respuestas, en el orden
+ * que el servidor las mande, y completa el future del id correspondiente.
+ * Los que envían solo se excluyen mientras escriben su trama, no durante la espera.
  */
 public class Client {
     private final String serverAddress; // Dirección IP o nombre del servidor
     private final int serverPort;       // Puerto del servidor
-    private Socket socket;              // Socket para la comunicación
-    private ObjectInputStream input;    // Flujo para recibir objetos
-    private ObjectOutputStream output;   // Flujo para enviar objetos
+    private volatile Socket socket;     // Socket para la comunicación
+    private DataInputStream input;      // Flujo para recibir tramas (solo lo usa el hilo lector)
+    private DataOutputStream output;    // Flujo para enviar tramas. Protegido por writeLock
+    // Codificadores de payload (tienen estado por conexión, uno por sentido)
+    private final Codec requestCodec = new Codec();   // Protegido por writeLock
+    private final Codec responseCodec = new Codec();  // Solo lo usa el hilo lector
+    private final Object writeLock = new Object();
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+    // Peticiones enviadas que esperan respuesta (id de petición -> future)
+    private final Map<Integer, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+    private volatile IOException failure; // Por qué se cayó la conexión, si se cayó
+    // Algoritmos de compresión que aceptamos en las respuestas (se anuncian en cada petición)
+    private static final byte ACCEPTED_COMPRESSION =
+            Compression.acceptFlags(System.getProperty("client.compression", "deflate,fast"));
 
     /**
      * Constructor que establece la conexión Sincrónica con el servidor.
@@ -33,9 +61,13 @@ public class Client {
             // Establecer la conexión al crear el objeto Cliente
             this.socket = new Socket(serverAddress, serverPort);
 
-            // IMPORTANTE: Crear Output primero asegura que el header se envíe antes de esperar datos.
-            this.output = new ObjectOutputStream(socket.getOutputStream());
-            this.input = new ObjectInputStream(socket.getInputStream());
+            this.socket.setTcpNoDelay(true); // Cada trama ya sale completa, no hace falta esperar a juntar más
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            Thread reader = new Thread(this::readResponses, "client-reader");
+            reader.setDaemon(true);
+            reader.start();
 
             System.out.println("Cliente conectado al servidor en " + serverAddress + ":" + serverPort);
 
@@ -51,40 +83,68 @@ public class Client {
 
 
     /**
-     * Envía un objeto (petición o parámetro) al servidor.
-     * @param request El objeto a enviar. Debe ser Serializable.
+     * Envía una petición completa (código de acción + parámetros) en una sola trama.
+     * No espera la respuesta: la entrega el future cuando llegue.
+     * Se puede llamar desde cualquier hilo.
+     * @param actionCode El código de acción (ver Protocol).
+     * @param params Los parámetros de la acción.
+     * @return Future con el objeto que responda el servidor.
      * @throws IOException Si ocurre un error de red durante el envío.
      */
-    public void sendRequest(Object request) throws IOException {
-        if (output == null) {
-            throw new IOException("La conexión no está establecida. No se puede enviar la petición.");
-        }
-        try {
-            output.writeObject(request);
-            output.flush(); // Asegura que los datos se envíen inmediatamente
-        } catch (IOException e) {
-            System.err.println("Error al enviar petición: " + e.getMessage());
-            close(); // Intenta cerrar la conexión si falla el envío
-            throw e;
+    public CompletableFuture<Object> sendRequest(int actionCode, Object... params) throws IOException {
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        int requestId = nextRequestId.getAndIncrement();
+        synchronized (writeLock) {
+            if (socket == null) {
+                throw new IOException("La conexión no está establecida. No se puede enviar la petición.",
+                        failure);
+            }
+            // Se registra antes de escribir: la respuesta puede llegar antes de salir de aquí
+            pending.put(requestId, response);
+            try {
+                // Codificar y escribir juntos: el Codec exige el mismo orden en el socket
+                new Frame(actionCode, requestId, ACCEPTED_COMPRESSION, requestCodec.encode(params)).write(output);
+                output.flush(); // Un solo flush por petición
+            } catch (IOException e) {
+                pending.remove(requestId);
+                System.err.println("Error al enviar petición: " + e.getMessage());
+                close(); // Intenta cerrar la conexión si falla el envío
+                throw e;
+            }
         }
+        return response;
     }
 
-    /**
-     * Espera y recibe un objeto (respuesta) del servidor.
-     * @return El objeto recibido del servidor.
-     * @throws IOException Si ocurre un error de red durante la recepción.
-     * @throws ClassNotFoundException Si la clase del objeto recibido no se encuentra.
-     */
-    public Object receiveResponse() throws IOException, ClassNotFoundException {
-        if (input == null) {
-            throw new IOException("La conexión no está establecida. No se puede recibir respuesta.");
-        }
+    // Bucle del hilo lector: cada trama que llega completa el future de su petición.
+    private void readResponses() {
         try {
-            return input.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error al recibir respuesta: " + e.getMessage());
-            close(); // Intenta cerrar la conexión si falla la recepción
-            throw e;
+            while (true) {
+                Frame response = Frame.read(input);
+                Object value;
+                try {
+                    byte[] payload = Compression.decompress(response.getPayload(), response.getFlags());
+                    value = responseCodec.decodeOne(payload);
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Respuesta ilegible para la petición " + response.getRequestId(), e);
+                }
+                CompletableFuture<Object> waiting = pending.remove(response.getRequestId());
+                if (waiting != null) {
+                    waiting.complete(value);
+                } else {
+                    System.err.println("Respuesta para una petición desconocida: " + response.getRequestId());
+                }
+            }
+        } catch (IOException e) {
+            if (socket != null) { // Si no, fue un close() nuestro
+                System.err.println("Error al recibir respuesta: " + e.getMessage());
+            }
+            failure = e;
+            close(); // Primero cerrar: así nadie más registra peticiones
+            // Nadie va a contestar lo que quedó pendiente
+            for (Integer id : pending.keySet()) {
+                CompletableFuture<Object> waiting = pending.remove(id);
+                if (waiting != null) waiting.completeExceptionally(e);
+            }
         }
     }
 
@@ -93,20 +153,15 @@ public class Client {
      * Es importante llamar a este método cuando la aplicación se cierra.
      */
     public void close() {
+        Socket s = socket;
+        socket = null;
+        if (s == null) return;
         try {
-            if (input != null) input.close();
-            if (output != null) output.close();
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
-                System.out.println("Conexión con el servidor cerrada.");
-            }
+            // Cerrar el socket cierra sus flujos y despierta al hilo lector
+            s.close();
+            System.out.println("Conexión con el servidor cerrada.");
         } catch (IOException e) {
             System.err.println("Error al cerrar la conexión: " + e.getMessage());
-        } finally {
-            // Liberar referencias
-            input = null;
-            output = null;
-            socket = null;
         }
     }
 
@@ -1,22 +1,33 @@
 package hospital.frontend.logic;
 
 import hospital.frontend.client.Client;
+import hospital.protocol.Page;
 import hospital.protocol.Protocol; // Importa la clase Protocol
+import hospital.protocol.ServerBusyException;
 import hospital.protocol.logic.*; // Importa todas las entidades
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service (Proxy) para el Frontend.
  * Envía códigos de operación (definidos en Protocol) al Backend.
+ * Es seguro usarlo desde varios hilos a la vez (EDT y SwingWorkers): todos comparten
+ * la misma conexión multiplexada del Client.
  */
 public class Service {
     // --- CÓDIGO DEL SINGLETON  ---
     private static Service theInstance;
-    public static Service getInstance() {
+    public static synchronized Service getInstance() {
         if (theInstance == null) {
             theInstance = new Service();
         }
@@ -26,6 +37,13 @@ public class Service {
     // --- ATRIBUTOS ---
     private Client client;
 
+    // Reintentos cuando el servidor responde "ocupado" (ServerBusyException)
+    private static final int MAX_BUSY_RETRIES = 3;
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    // Filas por página en las búsquedas paginadas (el servidor acepta hasta server.page.maxSize)
+    public static final int PAGE_SIZE = Integer.getInteger("client.pageSize", 50);
+
     // --- CONSTRUCTOR (Usa puertos del Protocol) ---
     private Service() {
         try {
@@ -42,27 +60,87 @@ public class Service {
     // =======================================================
 
     // --- MÉTODO sendRequest (Acepta int) ---
+    // Envía la petición y espera su respuesta (una petición sin pipelining).
     private Object sendRequest(int actionCode, Object... params) throws Exception {
+        return send(actionCode, params).get();
+    }
+
+    // Envía la petición sin esperar: la respuesta se reclama con Pending.get().
+    // Así una pantalla puede lanzar varias consultas seguidas sobre el mismo socket
+    // y pagar un solo viaje de ida y vuelta en lugar de uno por consulta.
+    private <T> Pending<T> send(int actionCode, Object... params) throws Exception {
         try {
-            client.sendRequest(actionCode); // Envía el código int
-            for (Object param : params) {
-                client.sendRequest(param);
-            }
-            Object response = client.receiveResponse();
+            CompletableFuture<Object> response = client.sendRequest(actionCode, params);
+            return new Pending<>(actionCode, withBusyRetries(actionCode, params, response, 0));
+        } catch (IOException e) {
+            throw new Exception("Error de comunicación en la acción: " + actionCode, e);
+        }
+    }
 
-            if (response instanceof Exception) {
-                throw (Exception) response;
+    // Si el servidor responde "ocupado", reenvía la petición después de la espera que él indique
+    // (con backoff exponencial). El rechazo garantiza que la petición no se llegó a ejecutar.
+    // La espera no ocupa ningún hilo (ni el EDT): el reenvío lo agenda un delayedExecutor.
+    private CompletableFuture<Object> withBusyRetries(int actionCode, Object[] params,
+                                                      CompletableFuture<Object> response, int intento) {
+        return response.thenCompose(value -> {
+            if (!(value instanceof ServerBusyException)) {
+                return CompletableFuture.completedFuture(value);
             }
-            //  se puedes añadir verificación para Protocol.ERROR si se implementa en el backend
-            // if (response instanceof Integer && (Integer)response == Protocol.ERROR) {
-            //    throw new Exception("Error reportado por el servidor (Código: " + Protocol.ERROR + ")");
-            // }
-            return response;
-        } catch (IOException | ClassNotFoundException e) {
-            throw new Exception("Error de comunicación en la acción: " + actionCode, e);
-        } catch (Exception e) { // Relanzar excepciones específicas o envolver otras
-            if (e instanceof Exception) throw e;
-            else throw new Exception("Error inesperado durante la acción: " + actionCode, e);
+            ServerBusyException busy = (ServerBusyException) value;
+            if (intento >= MAX_BUSY_RETRIES) {
+                return CompletableFuture.completedFuture(
+                        new Exception("El servidor está ocupado, intente de nuevo más tarde.", busy));
+            }
+            long espera = Math.min(MAX_BACKOFF_MS, busy.getRetryAfterMillis() << intento);
+            // Un poco de azar para que los clientes rechazados no vuelvan todos juntos
+            espera += (long) (Math.random() * espera / 4);
+            System.err.println("Servidor ocupado (acción " + actionCode + "), reintentando en " + espera + " ms...");
+            Executor luego = CompletableFuture.delayedExecutor(espera, TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.sendRequest(actionCode, params);
+                } catch (IOException e) {
+                    throw new CompletionException(e); // Pending.get() la informa como error de comunicación
+                }
+            }, luego).thenCompose(reenvio -> withBusyRetries(actionCode, params, reenvio, intento + 1));
+        });
+    }
+
+    private Object receive(int actionCode, CompletableFuture<Object> future) throws Exception {
+        Object response;
+        try {
+            response = future.get();
+        } catch (ExecutionException e) {
+            throw new Exception("Error de comunicación en la acción: " + actionCode, e.getCause());
+        }
+
+        if (response instanceof Exception) {
+            throw (Exception) response;
+        }
+        //  se puedes añadir verificación para Protocol.ERROR si se implementa en el backend
+        // if (response instanceof Integer && (Integer)response == Protocol.ERROR) {
+        //    throw new Exception("Error reportado por el servidor (Código: " + Protocol.ERROR + ")");
+        // }
+        return response;
+    }
+
+    /**
+     * Respuesta de una petición ya enviada al servidor y todavía sin leer.
+     * get() espera la respuesta; si el servidor estaba saturado, los reintentos ya van
+     * en curso por su cuenta (ver withBusyRetries) y get() espera el resultado del último.
+     */
+    public class Pending<T> {
+        private final int actionCode;
+        private final CompletableFuture<Object> response;
+
+        private Pending(int actionCode, CompletableFuture<Object> response) {
+            this.actionCode = actionCode;
+            this.response = response;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get() throws Exception {
+            return (T) receive(actionCode, response);
         }
     }
 
@@ -75,6 +153,11 @@ public class Service {
         sendRequest(Protocol.CHPASS, id, claveActual, claveNueva); // No espera objeto de vuelta, solo OK o Exception
     }
 
+    // Cierra la sesión que abrió autenticar() (el servidor la olvida)
+    public void cerrarSesion() throws Exception {
+        sendRequest(Protocol.LOGOUT);
+    }
+
     // --- MÉTODOS CRUD PARA MEDICAMENTOS ---
     public void createMedicamento(Medicamento med) throws Exception {
         sendRequest(Protocol.MEDICAMENTO_CREATE, med);
@@ -94,6 +177,13 @@ public class Service {
     public List<Medicamento> searchMedicamentos(String filtro) throws Exception {
         return (List<Medicamento>) sendRequest(Protocol.MEDICAMENTO_SEARCH, filtro);
     }
+    // Una página de la búsqueda: cursor null para la primera, luego el nextCursor de la anterior
+    public Page<Medicamento> searchMedicamentosPage(String filtro, String cursor) throws Exception {
+        return (Page<Medicamento>) sendRequest(Protocol.MEDICAMENTO_SEARCH_PAGE, filtro, PAGE_SIZE, cursor);
+    }
+    public Pending<List<Medicamento>> getMedicamentosAsync() throws Exception {
+        return send(Protocol.MEDICAMENTO_GET_ALL);
+    }
 
     // --- MÉTODOS CRUD PARA PACIENTES ---
     public void createPaciente(Paciente p) throws Exception {
@@ -114,6 +204,12 @@ public class Service {
     public List<Paciente> searchPacientes(String filtro) throws Exception {
         return (List<Paciente>) sendRequest(Protocol.PACIENTE_SEARCH, filtro);
     }
+    public Page<Paciente> searchPacientesPage(String filtro, String cursor) throws Exception {
+        return (Page<Paciente>) sendRequest(Protocol.PACIENTE_SEARCH_PAGE, filtro, PAGE_SIZE, cursor);
+    }
+    public Pending<List<Paciente>> getPacientesAsync() throws Exception {
+        return send(Protocol.PACIENTE_GET_ALL);
+    }
 
     // --- MÉTODOS CRUD PARA MÉDICOS ---
     public void createMedico(Medico m) throws Exception {
@@ -134,6 +230,12 @@ public class Service {
     public List<Medico> searchMedicos(String filtro) throws Exception {
         return (List<Medico>) sendRequest(Protocol.MEDICO_SEARCH, filtro);
     }
+    public Page<Medico> searchMedicosPage(String filtro, String cursor) throws Exception {
+        return (Page<Medico>) sendRequest(Protocol.MEDICO_SEARCH_PAGE, filtro, PAGE_SIZE, cursor);
+    }
+    public Pending<List<Medico>> getMedicosAsync() throws Exception {
+        return send(Protocol.MEDICO_GET_ALL);
+    }
 
     // --- MÉTODOS CRUD PARA FARMACEUTAS ---
     public void createFarmaceuta(Farmaceuta f) throws Exception {
@@ -154,6 +256,9 @@ public class Service {
     public List<Farmaceuta> searchFarmaceutas(String filtro) throws Exception {
         return (List<Farmaceuta>) sendRequest(Protocol.FARMACEUTA_SEARCH, filtro);
     }
+    public Page<Farmaceuta> searchFarmaceutasPage(String filtro, String cursor) throws Exception {
+        return (Page<Farmaceuta>) sendRequest(Protocol.FARMACEUTA_SEARCH_PAGE, filtro, PAGE_SIZE, cursor);
+    }
 
     // --- MÉTODOS PARA GESTIÓN DE RECETAS ---
     // CAMBIO 1: Cambiar 'void' por 'Receta'
@@ -170,6 +275,10 @@ public class Service {
     public List<Receta> findRecetasHistorico(String filtro) throws Exception {
         return (List<Receta>) sendRequest(Protocol.RECETA_GET_HISTORICO, filtro);
     }
+    // Histórico por páginas, de la receta más reciente a la más antigua (filtro vacío = todas)
+    public Page<Receta> findRecetasHistoricoPage(String filtro, String cursor) throws Exception {
+        return (Page<Receta>) sendRequest(Protocol.RECETA_GET_HISTORICO_PAGE, filtro, PAGE_SIZE, cursor);
+    }
     public List<Receta> getRecetas() throws Exception {
         return (List<Receta>) sendRequest(Protocol.RECETA_GET_ALL);
     }
@@ -181,6 +290,29 @@ public class Service {
     public Map<String, Integer> contarMedicamentosPorMes(Date desde, Date hasta, List<String> nombresMedicamentos) throws Exception {
         return (Map<String, Integer>) sendRequest(Protocol.DASHBOARD_GET_MEDICAMENTOS_MES, desde, hasta, nombresMedicamentos);
     }
+    public Pending<Map<String, Integer>> contarRecetasPorEstadoAsync() throws Exception {
+        return send(Protocol.DASHBOARD_GET_RECETAS_ESTADO);
+    }
+    public Pending<Map<String, Integer>> contarMedicamentosPorMesAsync(Date desde, Date hasta, List<String> nombresMedicamentos) throws Exception {
+        return send(Protocol.DASHBOARD_GET_MEDICAMENTOS_MES, desde, hasta, nombresMedicamentos);
+    }
+
+    // --- LOTES (BATCH) ---
+    // Una operación de un lote: el código de acción seguido de sus parámetros
+    public static List<Object> operation(int actionCode, Object... params) {
+        List<Object> operacion = new ArrayList<>(params.length + 1);
+        operacion.add(actionCode);
+        operacion.addAll(Arrays.asList(params));
+        return operacion;
+    }
+    /**
+     * Ejecuta varias operaciones en una sola ida y vuelta al servidor.
+     * @return El resultado de cada operación, en orden: el dato, Protocol.OK o la Exception de esa operación.
+     * @throws Exception Si el lote es transaccional y alguna operación falló (no quedó aplicada ninguna).
+     */
+    public List<Object> batch(boolean transaccional, List<List<Object>> operaciones) throws Exception {
+        return (List<Object>) sendRequest(Protocol.BATCH, transaccional, operaciones);
+    }
 
     // --- MÉTODO PARA CHAT ---
     public void sendMessage(String recipientId, String message) throws Exception {
@@ -0,0 +1,83 @@
+package hospital.frontend.presentation.common;
+
+import hospital.protocol.Page;
+
+import javax.swing.SwingWorker;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Búsqueda paginada para las tablas: search() trae la primera página y loadMore() la
+ * siguiente (se llama cuando la tabla llega al final, ver GuiUtils.onScrollToEnd).
+ *
+ * Guarda el filtro y el cursor de la búsqueda actual. Las páginas de una búsqueda anterior
+ * que lleguen tarde se descartan. Se usa solo desde el EDT.
+ * @param <T> La entidad de cada fila.
+ */
+public class PagedSearch<T> {
+
+    // Pide una página al Service (en un hilo de fondo)
+    public interface Fetcher<T> {
+        Page<T> fetch(String filtro, String cursor) throws Exception;
+    }
+
+    private final Fetcher<T> fetcher;
+    private final Consumer<List<T>> onFirstPage;  // Reemplaza las filas de la tabla
+    private final Consumer<List<T>> onNextPage;   // Agrega filas al final
+    private final Consumer<String> onError;
+
+    private String filtro = "";
+    private String cursor = null;    // null: no hay más páginas
+    private boolean loading = false;
+    private int busqueda = 0;        // Número de la búsqueda en curso
+
+    public PagedSearch(Fetcher<T> fetcher, Consumer<List<T>> onFirstPage,
+                       Consumer<List<T>> onNextPage, Consumer<String> onError) {
+        this.fetcher = fetcher;
+        this.onFirstPage = onFirstPage;
+        this.onNextPage = onNextPage;
+        this.onError = onError;
+    }
+
+    /** Empieza una búsqueda nueva: trae la primera página. */
+    public void search(String filtro) {
+        this.filtro = filtro == null ? "" : filtro;
+        this.cursor = null;
+        load(++busqueda, null);
+    }
+
+    /** Trae la página siguiente, si la hay y no se está trayendo ya una. */
+    public void loadMore() {
+        if (cursor == null || loading) return;
+        load(busqueda, cursor);
+    }
+
+    private void load(int numeroBusqueda, String desde) {
+        loading = true;
+        String filtroActual = filtro;
+        new SwingWorker<Page<T>, Void>() {
+            @Override
+            protected Page<T> doInBackground() throws Exception {
+                return fetcher.fetch(filtroActual, desde);
+            }
+
+            @Override
+            protected void done() {
+                if (numeroBusqueda != busqueda) return; // Llegó tarde: ya hay otra búsqueda
+                loading = false;
+                try {
+                    Page<T> page = get();
+                    cursor = page.getNextCursor();
+                    if (desde == null) {
+                        onFirstPage.accept(page.getItems());
+                    } else {
+                        onNextPage.accept(page.getItems());
+                    }
+                } catch (Exception ex) {
+                    Throwable causa = ex.getCause() != null ? ex.getCause() : ex;
+                    onError.accept(causa.getMessage());
+                }
+            }
+        }.execute();
+    }
+}
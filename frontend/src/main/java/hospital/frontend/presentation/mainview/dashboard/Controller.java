@@ -37,21 +37,26 @@ public class Controller {
     // El método 'generarReportes' ahora maneja los errores de red.
     public void generarReportes() {
         try {
-            // --- Gráfico de Pastel ---
-            Map<String, Integer> datosPieChart = Service.getInstance().contarRecetasPorEstado();
-            view.actualizarGraficoPie(datosPieChart);
-
-            // --- Gráfico de Líneas ---
             Date desde = view.getDesde();
             Date hasta = view.getHasta();
             List<String> nombresMedsSeleccionados = model.getMedicamentosSeleccionados().stream()
                     .map(Medicamento::getNombre)
                     .collect(Collectors.toList());
+            boolean hayLineas = !nombresMedsSeleccionados.isEmpty() && desde != null && hasta != null;
+
+            // Las dos consultas salen juntas (pipelining) y luego se esperan sus respuestas
+            Service.Pending<Map<String, Integer>> pie = Service.getInstance().contarRecetasPorEstadoAsync();
+            Service.Pending<Map<String, Integer>> lineas = hayLineas
+                    ? Service.getInstance().contarMedicamentosPorMesAsync(desde, hasta, nombresMedsSeleccionados)
+                    : null;
 
-            if (!nombresMedsSeleccionados.isEmpty() && desde != null && hasta != null) {
+            // --- Gráfico de Pastel ---
+            view.actualizarGraficoPie(pie.get());
+
+            // --- Gráfico de Líneas ---
+            if (lineas != null) {
                 // AHORA ESPERAMOS Map<String, Integer> del Service.
-                Map<String, Integer> datosLineChart = Service.getInstance().contarMedicamentosPorMes(desde, hasta, nombresMedsSeleccionados);
-                view.actualizarGraficoLineas(datosLineChart);
+                view.actualizarGraficoLineas(lineas.get());
             } else {
                 // Si no hay selección, limpiamos el gráfico.
                 view.actualizarGraficoLineas(Map.of());
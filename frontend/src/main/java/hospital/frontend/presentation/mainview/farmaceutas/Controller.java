@@ -2,15 +2,21 @@ package hospital.frontend.presentation.mainview.farmaceutas;
 
 import hospital.protocol.logic.Farmaceuta;
 import hospital.frontend.logic.Service;
+import hospital.frontend.presentation.common.PagedSearch;
 import javax.swing.SwingWorker; // Importamos SwingWorker para las tareas de red
 
 public class Controller {
     private View view;
     private Model model;
+    // Búsqueda por páginas: la primera al buscar, las siguientes al llegar al final de la tabla
+    private final PagedSearch<Farmaceuta> paginas;
 
     public Controller(View view, Model model) {
         this.view = view;
         this.model = model;
+        this.paginas = new PagedSearch<>(
+                (filtro, cursor) -> Service.getInstance().searchFarmaceutasPage(filtro, cursor),
+                model::setList, model::appendRows, model::setErrorMessage);
         view.setModel(model);
         view.setController(this);
         // Carga inicial de datos
@@ -93,12 +99,12 @@ public class Controller {
 
     // --- MÉTODO 'BUSCAR' CORREGIDO ---
     public void buscar(String filtro) {
-        try {
-            model.setList(Service.getInstance().searchFarmaceutas(filtro.trim()));
-        } catch (Exception e) {
-            // Ahora sí le informamos al usuario si la búsqueda falla.
-            model.setErrorMessage(e.getMessage());
-        }
+        paginas.search(filtro.trim());
+    }
+
+    // La tabla llegó al final: se pide la página siguiente (si la hay)
+    public void cargarMas() {
+        paginas.loadMore();
     }
 
     public void editar(int row) {
@@ -8,6 +8,7 @@ import java.util.List;
 public class Model extends AbstractModel {
     public static final String LIST = "farmaceutas.list";
     public static final String CURRENT = "farmaceutas.current";
+    public static final String ROWS = "farmaceutas.rows"; // Filas agregadas al final (página siguiente)
 
     private List<Farmaceuta> list;
     private Farmaceuta current;
@@ -28,6 +29,12 @@ public class Model extends AbstractModel {
         firePropertyChange(LIST, old, this.list); // Notifica el cambio en la lista
     }
 
+    // Agrega al final de la lista la página siguiente de la búsqueda
+    public void appendRows(List<Farmaceuta> rows) {
+        this.list.addAll(rows);
+        firePropertyChange(ROWS, null, rows); // Notifica solo las filas nuevas
+    }
+
     // --- Métodos para el Medico Actual (Formulario) ---
     public Farmaceuta getCurrent() {
         return current;
@@ -11,9 +11,18 @@ public class TableModel extends AbstractTableModel {
 
     public TableModel(List<Farmaceuta> rows) { this.rows = rows; }
     public void setRows(List<Farmaceuta> rows) {
-        this.rows = rows;
+        // Copia propia: el Model sigue agregando páginas a su lista
+        this.rows = new java.util.ArrayList<>(rows);
         this.fireTableDataChanged();
     }
+
+    // Agrega filas al final (la página siguiente de la búsqueda)
+    public void addRows(List<Farmaceuta> nuevas) {
+        if (nuevas.isEmpty()) return;
+        int first = rows.size();
+        rows.addAll(nuevas);
+        this.fireTableRowsInserted(first, rows.size() - 1);
+    }
     @Override
     public int getRowCount() { return rows.size(); }
 
@@ -5,6 +5,7 @@ import hospital.frontend.presentation.util.GuiUtils;
 import javax.swing.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.List;
 
 public class View implements PropertyChangeListener {
     // --- Atributos de la Interfaz  ---
@@ -89,10 +90,13 @@ public class View implements PropertyChangeListener {
         model.addPropertyChangeListener(this); // La vista se suscribe a los cambios del modelo
         farmaceutasTableModel = new TableModel(model.getList());
         farmaceutasTbl.setModel(farmaceutasTableModel);
+        // Al llegar al final de la tabla se pide la página siguiente
+        GuiUtils.onScrollToEnd(farmaceutasTbl, () -> controller.cargarMas());
     }
 
     // === EL MÉTODO PROPERTYCHANGE AHORA CENTRALIZA TODAS LAS ACTUALIZACIONES DE LA VISTA ===
     @Override
+    @SuppressWarnings("unchecked")
     public void propertyChange(PropertyChangeEvent evt) {
 
         // 1. Escucha por errores y los muestra
@@ -111,6 +115,12 @@ public class View implements PropertyChangeListener {
             });
         }
 
+        // Llegó la página siguiente: se agregan solo esas filas (después de un LIST pendiente)
+        if (evt.getPropertyName().equals(Model.ROWS)) {
+            List<Farmaceuta> nuevas = (List<Farmaceuta>) evt.getNewValue();
+            SwingUtilities.invokeLater(() -> farmaceutasTableModel.addRows(nuevas));
+        }
+
         // 3. Escucha por cambios en el elemento actual y actualiza el formulario
         if (evt.getPropertyName().equals(Model.CURRENT)) {
             Farmaceuta f = model.getCurrent();
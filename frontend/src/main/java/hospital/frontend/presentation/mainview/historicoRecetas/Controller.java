@@ -2,17 +2,22 @@ package hospital.frontend.presentation.mainview.historicoRecetas;
 
 import hospital.protocol.logic.Receta;
 import hospital.frontend.logic.Service;
+import hospital.frontend.presentation.common.PagedSearch;
 
 // Se elimina la importación de JOptionPane
-import java.util.List;
 
 public class Controller {
     private View view;
     private Model model;
+    // Búsqueda por páginas: la primera al buscar, las siguientes al llegar al final de la tabla
+    private final PagedSearch<Receta> paginas;
 
     public Controller(View view, Model model) {
         this.model = model;
         this.view = view;
+        this.paginas = new PagedSearch<>(
+                (filtro, cursor) -> Service.getInstance().findRecetasHistoricoPage(filtro, cursor),
+                model::setList, model::appendRows, model::setErrorMessage);
 
         // Conexión MVC
         view.setModel(model);
@@ -22,20 +27,21 @@ public class Controller {
        // this.search(""); // Llama al método search que ya maneja errores
     }
 
-    // === 'search' CORREGIDO CON MANEJO DE ERRORES MVC ===
+    // Carga inicial: se llama cuando la pestaña ya está en la ventana principal
+    public void show() {
+        search("");
+    }
+
+    // === 'search' POR PÁGINAS ===
+    // Se trae solo la primera página (las recetas más recientes); las demás se piden
+    // a medida que el usuario baja por la tabla, así el histórico completo nunca viaja entero.
     public void search(String filtro) {
-        try {
-            List<Receta> rows;
-            if (filtro == null || filtro.isEmpty()) {
-                rows = Service.getInstance().getRecetas(); // Puede lanzar excepción
-            } else {
-                rows = Service.getInstance().findRecetasHistorico(filtro); // Puede lanzar excepción
-            }
-            model.setList(rows);
-        } catch (Exception e) {
-            // Si hay un error de red, se lo pasamos al modelo.
-            model.setErrorMessage(e.getMessage());
-        }
+        paginas.search(filtro);
+    }
+
+    // La tabla llegó al final: se pide la página siguiente (si la hay)
+    public void cargarMas() {
+        paginas.loadMore();
     }
 
     // === 'verDetalle' CORREGIDO PARA NO USAR JOPTIONPANE ===
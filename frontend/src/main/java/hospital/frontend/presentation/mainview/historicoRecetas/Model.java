@@ -33,6 +33,16 @@ public class Model {
         support.firePropertyChange("list", oldList, this.list);
     }
 
+    /**
+     * Agrega al final de la lista la página siguiente de recetas.
+     * Debe llamarse en el EDT, igual que setList.
+     */
+    public void appendRows(List<Receta> rows) {
+        this.list.addAll(rows);
+        // Notifica solo las filas nuevas, para no redibujar toda la tabla en cada página.
+        support.firePropertyChange("rows", null, rows);
+    }
+
     public Receta getCurrent() {
         return current;
     }
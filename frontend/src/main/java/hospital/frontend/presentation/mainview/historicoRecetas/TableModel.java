@@ -48,8 +48,17 @@ public class TableModel extends AbstractTableModel {
     }
 
     public void setList(List<Receta> rows) {
-        this.rows = rows;
+        // Copia propia: el Model sigue agregando filas a su lista mientras llegan partes
+        this.rows = new java.util.ArrayList<>(rows);
         // Notifica a la JTable que los datos han cambiado y debe redibujarse.
         this.fireTableDataChanged();
     }
+
+    // Agrega filas al final (la página siguiente)
+    public void addRows(List<Receta> nuevas) {
+        if (nuevas.isEmpty()) return;
+        int first = rows.size();
+        rows.addAll(nuevas);
+        this.fireTableRowsInserted(first, rows.size() - 1);
+    }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import hospital.protocol.logic.Receta;
 import javax.swing.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.List;
 
 public class View implements PropertyChangeListener {
     private JPanel panel;
@@ -55,6 +56,8 @@ public class View implements PropertyChangeListener {
         // Inicializamos el TableModel personalizado
         this.tableModel = new TableModel();
         this.tablaRecetas.setModel(tableModel);
+        // Al llegar al final de la tabla se pide la página siguiente
+        GuiUtils.onScrollToEnd(tablaRecetas, () -> controller.cargarMas());
     }
 
     public void setController(Controller controller) {
@@ -63,6 +66,7 @@ public class View implements PropertyChangeListener {
 
     // === PROPERTYCHANGE AHORA MANEJA TODAS LAS ACTUALIZACIONES ===
     @Override
+    @SuppressWarnings("unchecked")
     public void propertyChange(PropertyChangeEvent evt) {
 
         // 1. Escucha por errores y los muestra
@@ -81,6 +85,11 @@ public class View implements PropertyChangeListener {
             });
         }
 
+        // 2b. Llegó la página siguiente: se agregan solo esas filas
+        if (evt.getPropertyName().equals("rows")) {
+            tableModel.addRows((List<Receta>) evt.getNewValue());
+        }
+
         // 3. Escucha por un cambio en la receta actual y muestra los detalles
         if (evt.getPropertyName().equals("current")) {
             Receta receta = model.getCurrent();
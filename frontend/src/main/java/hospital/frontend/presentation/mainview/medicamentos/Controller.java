@@ -2,38 +2,37 @@ package hospital.frontend.presentation.mainview.medicamentos;
 
 import hospital.protocol.logic.Medicamento;
 import hospital.frontend.logic.Service;
-import java.util.List;
+import hospital.frontend.presentation.common.PagedSearch;
 import javax.swing.SwingWorker;
 
 public class Controller {
     private View view;
     private Model model;
+    // Búsqueda por páginas: la primera al buscar, las siguientes al llegar al final de la tabla
+    private final PagedSearch<Medicamento> paginas;
 
     public Controller(View view, Model model) {
         this.model = model;
+        this.paginas = new PagedSearch<>(
+                (filtro, cursor) -> Service.getInstance().searchMedicamentosPage(filtro, cursor),
+                model::setList, model::appendRows, model::setErrorMessage);
         this.view = view;
         view.setModel(model);
         view.setController(this);
 
-        // Se cargan los datos iniciales y se maneja cualquier error de red.
-        try {
-            model.setList(Service.getInstance().getMedicamentos());
-            model.setCurrent(new Medicamento());
-        } catch (Exception e) {
-            // Se le pasa el error al modelo para que la vista lo muestre.
-            model.setErrorMessage(e.getMessage());
-        }
+        // Se carga la primera página; los errores de red llegan al modelo.
+        model.setCurrent(new Medicamento());
+        this.search("");
     }
 
     // --- MÉTODO 'SEARCH' CORREGIDO ---
     public void search(String filtro) {
-        try {
-            List<Medicamento> rows = Service.getInstance().searchMedicamentos(filtro);
-            model.setList(rows);
-        } catch (Exception e) {
-            // Se le pasa el error al modelo.
-            model.setErrorMessage(e.getMessage());
-        }
+        paginas.search(filtro);
+    }
+
+    // La tabla llegó al final: se pide la página siguiente (si la hay)
+    public void cargarMas() {
+        paginas.loadMore();
     }
 
     // === MÉTODO 'SAVE' CORREGIDO (SIN JOPTIONPANE) ===
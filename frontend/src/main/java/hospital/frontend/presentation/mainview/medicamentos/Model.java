@@ -8,6 +8,7 @@ import java.util.List;
 public class Model extends AbstractModel {
     public static final String LIST = "medicamentos.list";
     public static final String CURRENT = "medicamentos.current";
+    public static final String ROWS = "medicamentos.rows"; // Filas agregadas al final (página siguiente)
 
     private List<Medicamento> list;
     private Medicamento current;
@@ -23,6 +24,12 @@ public class Model extends AbstractModel {
         firePropertyChange(LIST, old, this.list);
     }
 
+    // Agrega al final de la lista la página siguiente de la búsqueda
+    public void appendRows(List<Medicamento> rows) {
+        this.list.addAll(rows);
+        firePropertyChange(ROWS, null, rows); // Notifica solo las filas nuevas
+    }
+
     public void setCurrent(Medicamento current) {
         Medicamento old = this.current;
         this.current = current;
@@ -14,9 +14,18 @@ public class TableModel extends AbstractTableModel {
 
     // === MÉTODO AÑADIDO ===
     public void setRows(List<Medicamento> rows) {
-        this.rows = rows;
+        // Copia propia: el Model sigue agregando páginas a su lista
+        this.rows = new java.util.ArrayList<>(rows);
         this.fireTableDataChanged();
     }
+
+    // Agrega filas al final (la página siguiente de la búsqueda)
+    public void addRows(List<Medicamento> nuevas) {
+        if (nuevas.isEmpty()) return;
+        int first = rows.size();
+        rows.addAll(nuevas);
+        this.fireTableRowsInserted(first, rows.size() - 1);
+    }
     // ======================
 
     @Override
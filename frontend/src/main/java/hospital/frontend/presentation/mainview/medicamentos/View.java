@@ -3,6 +3,7 @@ package hospital.frontend.presentation.mainview.medicamentos;
 import hospital.protocol.logic.Medicamento;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.List;
 import javax.swing.*;
 import javax.swing.event.ListSelectionEvent;
 import hospital.frontend.presentation.util.GuiUtils;
@@ -92,9 +93,12 @@ public class View implements PropertyChangeListener {
 
         this.medicamentosTableModel = new TableModel(model.getList());
         this.medicamentosTbl.setModel(medicamentosTableModel);
+        // Al llegar al final de la tabla se pide la página siguiente
+        GuiUtils.onScrollToEnd(medicamentosTbl, () -> controller.cargarMas());
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void propertyChange(PropertyChangeEvent evt) {
         // --- Lógica para actualizar el formulario  ---
 
@@ -127,6 +131,12 @@ public class View implements PropertyChangeListener {
                 panel.repaint();
             });
         }
+
+        // Llegó la página siguiente: se agregan solo esas filas (después de un LIST pendiente)
+        if (evt.getPropertyName().equals(Model.ROWS)) {
+            List<Medicamento> nuevas = (List<Medicamento>) evt.getNewValue();
+            SwingUtilities.invokeLater(() -> medicamentosTableModel.addRows(nuevas));
+        }
     }
 
     public JPanel getPanel() { return panel; }
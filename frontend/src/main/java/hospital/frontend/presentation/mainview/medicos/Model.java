@@ -8,6 +8,7 @@ import java.util.List;
 public class Model extends AbstractModel {
     public static final String LIST = "medicos.list";
     public static final String CURRENT = "medicos.current";
+    public static final String ROWS = "medicos.rows"; // Filas agregadas al final (página siguiente)
 
     private List<Medico> list;
     private Medico current;
@@ -28,6 +29,12 @@ public class Model extends AbstractModel {
         firePropertyChange(LIST, old, this.list); // Notifica el cambio en la lista
     }
 
+    // Agrega al final de la lista la página siguiente de la búsqueda
+    public void appendRows(List<Medico> rows) {
+        this.list.addAll(rows);
+        firePropertyChange(ROWS, null, rows); // Notifica solo las filas nuevas
+    }
+
     // --- Métodos para el Medico Actual (Formulario) ---
     public Medico getCurrent() {
         return current;
@@ -13,10 +13,19 @@ public class TableModel extends AbstractTableModel {
     }
 
     public void setRows(List<Medico> rows) {
-        this.rows = rows;
+        // Copia propia: el Model sigue agregando páginas a su lista
+        this.rows = new java.util.ArrayList<>(rows);
         this.fireTableDataChanged();
     }
 
+    // Agrega filas al final (la página siguiente de la búsqueda)
+    public void addRows(List<Medico> nuevas) {
+        if (nuevas.isEmpty()) return;
+        int first = rows.size();
+        rows.addAll(nuevas);
+        this.fireTableRowsInserted(first, rows.size() - 1);
+    }
+
     @Override
     public int getRowCount() { return rows.size(); }
 
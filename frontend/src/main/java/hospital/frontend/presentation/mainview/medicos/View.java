@@ -6,6 +6,7 @@ import hospital.protocol.logic.Medico;
 import javax.swing.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.List;
 import javax.swing.event.ListSelectionEvent;
 
 public class View implements PropertyChangeListener {
@@ -96,10 +97,13 @@ public class View implements PropertyChangeListener {
         model.addPropertyChangeListener(this); // La vista se suscribe a los cambios
         medicosTableModel = new TableModel(model.getList());
         medicosTbl.setModel(medicosTableModel);
+        // Al llegar al final de la tabla se pide la página siguiente
+        GuiUtils.onScrollToEnd(medicosTbl, () -> controller.cargarMas());
     }
 
     // === PROPERTYCHANGE AHORA MANEJA TODAS LAS ACTUALIZACIONES ===
     @Override
+    @SuppressWarnings("unchecked")
     public void propertyChange(PropertyChangeEvent evt) {
 
         // 1. Escucha por errores y los muestra
@@ -118,6 +122,12 @@ public class View implements PropertyChangeListener {
             });
         }
 
+        // Llegó la página siguiente: se agregan solo esas filas (después de un LIST pendiente)
+        if (evt.getPropertyName().equals(Model.ROWS)) {
+            List<Medico> nuevas = (List<Medico>) evt.getNewValue();
+            SwingUtilities.invokeLater(() -> medicosTableModel.addRows(nuevas));
+        }
+
         // 3. Escucha por cambios en el elemento actual y actualiza el formulario
         if (evt.getPropertyName().equals(Model.CURRENT)) {
             Medico medico = model.getCurrent();
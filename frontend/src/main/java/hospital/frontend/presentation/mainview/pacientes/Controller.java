@@ -2,16 +2,21 @@ package hospital.frontend.presentation.mainview.pacientes;
 
 import hospital.protocol.logic.Paciente;
 import hospital.frontend.logic.Service;
-import java.util.List;
+import hospital.frontend.presentation.common.PagedSearch;
 import javax.swing.SwingWorker;
 
 public class Controller {
     private View view;
     private Model model;
+    // Búsqueda por páginas: la primera al buscar, las siguientes al llegar al final de la tabla
+    private final PagedSearch<Paciente> paginas;
 
     public Controller(View view, Model model) {
         this.view = view;
         this.model = model;
+        this.paginas = new PagedSearch<>(
+                (filtro, cursor) -> Service.getInstance().searchPacientesPage(filtro, cursor),
+                model::setList, model::appendRows, model::setErrorMessage);
         view.setModel(model);
         view.setController(this);
         // Carga inicial de datos, ahora con manejo de errores.
@@ -86,13 +91,12 @@ public class Controller {
 
     // --- MÉTODO 'buscarPaciente' CORREGIDO ---
     public void buscarPaciente(String filtro) {
-        try {
-            List<Paciente> rows = Service.getInstance().searchPacientes(filtro);
-            model.setList(rows);
-        } catch (Exception e) {
-            // Si la búsqueda falla, se lo informamos al usuario.
-            model.setErrorMessage(e.getMessage());
-        }
+        paginas.search(filtro);
+    }
+
+    // La tabla llegó al final: se pide la página siguiente (si la hay)
+    public void cargarMas() {
+        paginas.loadMore();
     }
 
     public void generarReporte() {
@@ -9,6 +9,7 @@ public class Model extends AbstractModel { // <-- Corregido
     // Constantes para identificar las propiedades que cambian
     public static final String LIST = "pacientes.list";
     public static final String CURRENT = "pacientes.current";
+    public static final String ROWS = "pacientes.rows"; // Filas agregadas al final (página siguiente)
 
     private List<Paciente> list; // <-- Atributo añadido para la tabla
     private Paciente current;    // Atributo para el formulario
@@ -29,6 +30,12 @@ public class Model extends AbstractModel { // <-- Corregido
         firePropertyChange(LIST, old, this.list); // Notifica el cambio en la lista
     }
 
+    // Agrega al final de la lista la página siguiente de la búsqueda
+    public void appendRows(List<Paciente> rows) {
+        this.list.addAll(rows);
+        firePropertyChange(ROWS, null, rows); // Notifica solo las filas nuevas
+    }
+
     // --- Métodos para el Paciente Actual (Formulario) ---
     public Paciente getCurrent() {
         return current;
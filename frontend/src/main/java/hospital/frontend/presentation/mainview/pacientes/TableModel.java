@@ -13,11 +13,20 @@ public class TableModel extends AbstractTableModel {
         this.rows = rows;
     }
     public void setRows(List<Paciente> rows) {
-        this.rows = rows;
+        // Copia propia: el Model sigue agregando páginas a su lista
+        this.rows = new java.util.ArrayList<>(rows);
         // Esta es la señal oficial para que la JTable se redibuje completamente
         this.fireTableDataChanged();
     }
 
+    // Agrega filas al final (la página siguiente de la búsqueda)
+    public void addRows(List<Paciente> nuevas) {
+        if (nuevas.isEmpty()) return;
+        int first = rows.size();
+        rows.addAll(nuevas);
+        this.fireTableRowsInserted(first, rows.size() - 1);
+    }
+
     @Override
     public int getRowCount() { return rows.size(); }
 
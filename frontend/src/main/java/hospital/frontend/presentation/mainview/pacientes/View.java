@@ -5,6 +5,7 @@ import hospital.protocol.logic.Paciente;
 import java.awt.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.List;
 import javax.swing.*;
 import javax.swing.event.ListSelectionEvent;
 
@@ -101,10 +102,13 @@ public class View implements PropertyChangeListener {
         model.addPropertyChangeListener(this);
         this.pacientesTableModel = new TableModel(model.getList());
         this.pacientesTbl.setModel(pacientesTableModel);
+        // Al llegar al final de la tabla se pide la página siguiente
+        GuiUtils.onScrollToEnd(pacientesTbl, () -> controller.cargarMas());
     }
 
     // === PROPERTYCHANGE AHORA MANEJA TODAS LAS ACTUALIZACIONES ===
     @Override
+    @SuppressWarnings("unchecked")
     public void propertyChange(PropertyChangeEvent evt) {
 
         // 1. Escucha por errores y los muestra
@@ -123,6 +127,12 @@ public class View implements PropertyChangeListener {
             });
         }
 
+        // Llegó la página siguiente: se agregan solo esas filas (después de un LIST pendiente)
+        if (evt.getPropertyName().equals(Model.ROWS)) {
+            List<Paciente> nuevas = (List<Paciente>) evt.getNewValue();
+            SwingUtilities.invokeLater(() -> pacientesTableModel.addRows(nuevas));
+        }
+
         // 3. Escucha por cambios en el elemento actual y actualiza el formulario
         if (evt.getPropertyName().equals(Model.CURRENT)) {
             Paciente p = model.getCurrent();
@@ -1,6 +1,10 @@
 package hospital.frontend.presentation.util;
 
 import javax.swing.ImageIcon;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
 import java.awt.Image;
 
 public class GuiUtils {
@@ -16,4 +20,22 @@ public class GuiUtils {
         Image scaledImg = img.getScaledInstance(width, height, Image.SCALE_SMOOTH);
         return new ImageIcon(scaledImg);
     }
-}
\ No newline at end of file
+
+    /**
+     * Llama a onEnd cuando la barra de desplazamiento de la tabla llega (casi) al final.
+     * Sirve para pedir la página siguiente de una búsqueda paginada.
+     * La tabla ya debe estar dentro de su JScrollPane.
+     */
+    public static void onScrollToEnd(JTable table, Runnable onEnd) {
+        JScrollPane scroll = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, table);
+        if (scroll == null) return;
+        JScrollBar bar = scroll.getVerticalScrollBar();
+        bar.addAdjustmentListener(e -> {
+            if (e.getValueIsAdjusting()) return;
+            // A menos de una pantalla del final
+            if (bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - bar.getVisibleAmount()) {
+                onEnd.run();
+            }
+        });
+    }
+}
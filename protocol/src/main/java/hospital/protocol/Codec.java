@@ -0,0 +1,334 @@
+package hospital.protocol;
+
+import hospital.protocol.logic.EstadoReceta;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codifica los parámetros y respuestas que viajan en el payload de una Frame.
+ *
+ * Cada valor lleva un tag de un byte. Los tipos simples (números, textos, fechas,
+ * EstadoReceta) y las colecciones (List, Map) se escriben a mano, sin la maquinaria
+ * de serialización de Java. Las entidades (Paciente, Receta, ...) y las excepciones
+ * viajan como OBJECT a través de un ObjectOutputStream que vive lo que dura la
+ * conexión, así los descriptores de clase se envían una sola vez por conexión.
+ *
+ * Por ese flujo compartido el Codec tiene estado: hay uno por conexión y por sentido,
+ * y los payloads deben decodificarse en el mismo orden en que se codificaron.
+ * No es thread-safe; quien lo usa serializa el acceso.
+ *
+ * Para que la tabla de handles de ese flujo no crezca sin límite, el lado que escribe
+ * hace reset() según una ResetPolicy y lo avisa con un tag RESET al final del payload;
+ * el ObjectInputStream del otro lado vacía su tabla solo al leer la marca del reset.
+ */
+public class Codec {
+    // --- Tags ---
+    private static final byte NULL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte STRING = 4;
+    private static final byte DATE = 5;
+    private static final byte ESTADO = 6;
+    private static final byte LIST = 7;
+    private static final byte MAP = 8;
+    private static final byte OBJECT = 9;
+    private static final byte RESET = 10; // No es un valor: el que escribe vació su tabla de handles
+    private static final Object RESET_MARK = new Object();
+
+    private final ResetPolicy resetPolicy;
+
+    // Lado de escritura del flujo de objetos (se crea con el primer OBJECT)
+    private final ByteArrayOutputStream objectBuffer = new ByteArrayOutputStream();
+    private CountingObjectOutputStream objectOut;
+    // Lado de lectura: se alimenta con los bytes de cada OBJECT recibido
+    private final ObjectFeed objectFeed = new ObjectFeed();
+    private CountingObjectInputStream objectIn;
+
+    // --- Métricas (se leen desde otros hilos, solo para reportes) ---
+    private volatile long writtenObjects; // Objetos en la tabla de handles de escritura
+    private volatile long writtenBytes;   // Bytes de objetos escritos desde el último reset
+    private volatile long readObjects;    // Objetos en la tabla de handles de lectura
+    private volatile long resets;         // Resets hechos (escritura) o recibidos (lectura)
+
+    /** Codec con la política de reset de -Dprotocol.reset. */
+    public Codec() {
+        this(ResetPolicy.fromSystem());
+    }
+
+    public Codec(ResetPolicy resetPolicy) {
+        this.resetPolicy = resetPolicy;
+    }
+
+    // =======================================================
+    // ===                   CODIFICAR                     ===
+    // =======================================================
+
+    /** Codifica una secuencia de valores (los parámetros de una petición o una respuesta). */
+    public byte[] encode(Object... values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Object value : values) {
+            writeValue(out, value);
+        }
+        if (objectOut != null && resetPolicy.shouldReset(writtenBytes, writtenObjects)) {
+            // La marca del reset sale con el próximo OBJECT; el tag avisa ya al otro lado
+            objectOut.reset();
+            out.writeByte(RESET);
+            writtenObjects = 0;
+            writtenBytes = 0;
+            resets++;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value.getClass() == Date.class) { // java.sql.Date y compañía van como OBJECT
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof EstadoReceta) {
+            out.writeByte(ESTADO);
+            out.writeByte(((EstadoReceta) value).ordinal());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof Serializable) {
+            byte[] serialized = writeObject(value);
+            out.writeByte(OBJECT);
+            out.writeInt(serialized.length);
+            out.write(serialized);
+        } else {
+            throw new IOException("Tipo no soportado por el protocolo: " + value.getClass().getName());
+        }
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private byte[] writeObject(Object value) throws IOException {
+        if (objectOut == null) {
+            objectOut = new CountingObjectOutputStream(objectBuffer); // El header va con el primer objeto
+        }
+        objectOut.writeObject(value);
+        objectOut.flush();
+        byte[] serialized = objectBuffer.toByteArray();
+        objectBuffer.reset();
+        writtenBytes += serialized.length;
+        return serialized;
+    }
+
+    // =======================================================
+    // ===                  DECODIFICAR                    ===
+    // =======================================================
+
+    /** Decodifica todos los valores de un payload, en orden. */
+    public Object[] decode(byte[] payload) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        List<Object> values = new ArrayList<>();
+        while (in.available() > 0) {
+            Object value = readValue(in);
+            if (value != RESET_MARK) {
+                values.add(value);
+            }
+        }
+        return values.toArray();
+    }
+
+    /** Decodifica un payload que contiene un único valor (una respuesta). */
+    public Object decodeOne(byte[] payload) throws IOException, ClassNotFoundException {
+        Object[] values = decode(payload);
+        return values.length == 0 ? null : values[0];
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL: return null;
+            case INT: return in.readInt();
+            case LONG: return in.readLong();
+            case BOOLEAN: return in.readBoolean();
+            case STRING: return readString(in);
+            case DATE: return new Date(in.readLong());
+            case ESTADO: return EstadoReceta.values()[in.readByte()];
+            case LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = in.readInt();
+                Map<Object, Object> map = new LinkedHashMap<>(); // Respeta el orden del que envía
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            case OBJECT: {
+                byte[] serialized = new byte[in.readInt()];
+                in.readFully(serialized);
+                return readObject(serialized);
+            }
+            case RESET:
+                readObjects = 0;
+                resets++;
+                return RESET_MARK;
+            default:
+                throw new IOException("Tag desconocido en el payload: " + tag);
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private Object readObject(byte[] serialized) throws IOException, ClassNotFoundException {
+        objectFeed.set(serialized);
+        if (objectIn == null) {
+            objectIn = new CountingObjectInputStream(objectFeed); // Lee el header del primer objeto
+        }
+        return objectIn.readObject();
+    }
+
+    // =======================================================
+    // ===                   MÉTRICAS                      ===
+    // =======================================================
+
+    /** Objetos que hoy retiene la tabla de handles del lado que escribe. */
+    public long getWrittenHandles() {
+        return writtenObjects;
+    }
+
+    /** Objetos que hoy retiene la tabla de handles del lado que lee. */
+    public long getReadHandles() {
+        return readObjects;
+    }
+
+    public long getResetCount() {
+        return resets;
+    }
+
+    public ResetPolicy getResetPolicy() {
+        return resetPolicy;
+    }
+
+    public String getStats() {
+        return "handles escritos=" + writtenObjects + " (" + writtenBytes + " bytes), handles leídos="
+                + readObjects + ", resets=" + resets;
+    }
+
+    /**
+     * ObjectOutputStream que cuenta los objetos nuevos que entran a su tabla de handles.
+     * replaceObject() solo se llama para objetos que no estaban ya en la tabla
+     * (las referencias repetidas se escriben como handle sin pasar por aquí).
+     */
+    private class CountingObjectOutputStream extends ObjectOutputStream {
+        CountingObjectOutputStream(ByteArrayOutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            writtenObjects++;
+            return obj;
+        }
+    }
+
+    /** El equivalente de lectura: resolveObject() se llama una vez por objeto nuevo leído. */
+    private class CountingObjectInputStream extends ObjectInputStream {
+        CountingObjectInputStream(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            readObjects++;
+            return obj;
+        }
+    }
+
+    /**
+     * InputStream cuyo contenido se reemplaza con los bytes de cada OBJECT,
+     * para que un único ObjectInputStream lea todos los objetos de la conexión.
+     */
+    private static class ObjectFeed extends InputStream {
+        private byte[] data = new byte[0];
+        private int pos;
+
+        void set(byte[] data) {
+            this.data = data;
+            this.pos = 0;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (pos >= data.length) return -1;
+            int n = Math.min(len, data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return data.length - pos;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package hospital.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresión de payloads, negociada con los flags de la trama.
+ *
+ * Cada petición anuncia en sus flags qué algoritmos acepta el cliente (ACCEPT_*).
+ * El servidor solo comprime una respuesta si el cliente la acepta y el payload supera
+ * un umbral, y marca en los flags de la respuesta con qué algoritmo lo hizo.
+ * Un cliente que no anuncia nada recibe siempre payloads sin comprimir.
+ *
+ * Algoritmos:
+ *   DEFLATE   zlib con el nivel por defecto (mejor relación, más CPU)
+ *   FAST      deflate crudo con BEST_SPEED (sin diccionarios caros: la opción rápida)
+ *
+ * Un payload comprimido empieza con su largo original (int) para reservar el buffer exacto.
+ */
+public class Compression {
+    // --- Flags de la respuesta: con qué se comprimió el payload ---
+    public static final byte DEFLATE = 0x01;
+    public static final byte FAST = 0x02;
+    private static final byte ALGORITHM_MASK = DEFLATE | FAST;
+
+    // --- Flags de la petición: qué acepta el cliente ---
+    public static final byte ACCEPT_DEFLATE = 0x10;
+    public static final byte ACCEPT_FAST = 0x20;
+
+    private Compression() {
+    }
+
+    /**
+     * Traduce una lista de nombres ("deflate,fast", "none") a flags ACCEPT_*.
+     * @throws IllegalArgumentException Si algún nombre no es un algoritmo conocido.
+     */
+    public static byte acceptFlags(String names) {
+        byte flags = 0;
+        for (String name : names.split(",")) {
+            byte algorithm = parse(name);
+            if (algorithm == DEFLATE) flags |= ACCEPT_DEFLATE;
+            if (algorithm == FAST) flags |= ACCEPT_FAST;
+        }
+        return flags;
+    }
+
+    /**
+     * El algoritmo con ese nombre (deflate, fast) o 0 para "none".
+     * @throws IllegalArgumentException Si el nombre no es un algoritmo conocido.
+     */
+    public static byte parse(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "deflate": return DEFLATE;
+            case "fast": return FAST;
+            case "none": case "": return 0;
+            default: throw new IllegalArgumentException("Algoritmo de compresión desconocido: " + name);
+        }
+    }
+
+    /** ¿Los flags de la petición aceptan ese algoritmo? */
+    public static boolean accepts(byte requestFlags, byte algorithm) {
+        return (algorithm == DEFLATE && (requestFlags & ACCEPT_DEFLATE) != 0)
+                || (algorithm == FAST && (requestFlags & ACCEPT_FAST) != 0);
+    }
+
+    /** El algoritmo con que viene comprimido un payload, según los flags de su trama (0 = ninguno). */
+    public static byte algorithmOf(byte flags) {
+        return (byte) (flags & ALGORITHM_MASK);
+    }
+
+    public static String name(byte algorithm) {
+        switch (algorithm) {
+            case DEFLATE: return "deflate";
+            case FAST: return "fast";
+            default: return "none";
+        }
+    }
+
+    /** Comprime un payload con el algoritmo indicado (DEFLATE o FAST). */
+    public static byte[] compress(byte[] data, byte algorithm) {
+        Deflater deflater = algorithm == FAST
+                ? new Deflater(Deflater.BEST_SPEED, true)
+                : new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+            out.write(data.length >>> 24);
+            out.write(data.length >>> 16);
+            out.write(data.length >>> 8);
+            out.write(data.length);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Descomprime un payload según los flags de su trama; si no venía comprimido lo devuelve igual.
+     * @throws IOException Si el payload está corrupto o dice medir más de lo permitido.
+     */
+    public static byte[] decompress(byte[] data, byte flags) throws IOException {
+        byte algorithm = algorithmOf(flags);
+        if (algorithm == 0) return data;
+        if (data.length < 4) {
+            throw new IOException("Payload comprimido demasiado corto: " + data.length + " bytes");
+        }
+        int length = ByteBuffer.wrap(data).getInt();
+        if (length < 0 || length > Frame.MAX_PAYLOAD) {
+            throw new IOException("Largo descomprimido inválido: " + length);
+        }
+        Inflater inflater = new Inflater(algorithm == FAST);
+        try {
+            inflater.setInput(data, 4, data.length - 4);
+            byte[] result = new byte[length];
+            int off = 0;
+            while (off < length) {
+                int n = inflater.inflate(result, off, length - off);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Payload comprimido truncado: " + off + " de " + length + " bytes");
+                }
+                off += n;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Payload comprimido corrupto: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
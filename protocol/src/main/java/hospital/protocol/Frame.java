@@ -0,0 +1,116 @@
+package hospital.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Trama del protocolo binario entre frontend y backend.
+ * Cada petición o respuesta viaja como UNA trama: una cabecera fija seguida del payload.
+ *
+ * Cabecera (13 bytes, big-endian):
+ *   [largo del payload : int][código de acción : int][id de petición : int][flags : byte]
+ *
+ * El payload son los parámetros (o la respuesta) codificados con Codec.
+ * La respuesta repite el código de acción y el id de la petición que contesta.
+ *
+ * Bits de flags:
+ *   0x01, 0x02  respuesta: algoritmo con que se comprimió el payload (ver Compression)
+ *   0x10, 0x20  petición: algoritmos de compresión que acepta el cliente (ver Compression)
+ */
+public class Frame {
+    public static final int HEADER_SIZE = 13;
+    // Límite de seguridad: una cabecera corrupta no debe hacernos reservar gigas
+    public static final int MAX_PAYLOAD = 64 * 1024 * 1024;
+
+    private final int action;
+    private final int requestId;
+    private final byte flags;
+    private final byte[] payload;
+
+    public Frame(int action, int requestId, byte flags, byte[] payload) {
+        this.action = action;
+        this.requestId = requestId;
+        this.flags = flags;
+        this.payload = payload;
+    }
+
+    // --- Getters ---
+
+    public int getAction() {
+        return action;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public byte getFlags() {
+        return flags;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    // --- Escritura ---
+
+    /**
+     * Escribe la trama completa. No hace flush: el que llama decide cuándo vaciar
+     * el buffer (normalmente una vez por trama).
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(payload.length);
+        out.writeInt(action);
+        out.writeInt(requestId);
+        out.writeByte(flags);
+        out.write(payload);
+    }
+
+    /** La trama completa (cabecera + payload) en un solo arreglo, para canales NIO. */
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buf.putInt(payload.length).putInt(action).putInt(requestId).put(flags).put(payload);
+        return buf.array();
+    }
+
+    // --- Lectura ---
+
+    /** Lee una trama completa de un flujo bloqueante. */
+    public static Frame read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        checkLength(length);
+        int action = in.readInt();
+        int requestId = in.readInt();
+        byte flags = in.readByte();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(action, requestId, flags, payload);
+    }
+
+    /**
+     * Intenta sacar una trama de un buffer (en modo lectura).
+     * @return La trama, o null si todavía no llegaron todos sus bytes (el buffer no se consume).
+     */
+    public static Frame read(ByteBuffer buf) throws IOException {
+        if (buf.remaining() < HEADER_SIZE) return null;
+        int start = buf.position();
+        int length = buf.getInt(start);
+        checkLength(length);
+        if (buf.remaining() < HEADER_SIZE + length) return null;
+        int action = buf.getInt(start + 4);
+        int requestId = buf.getInt(start + 8);
+        byte flags = buf.get(start + 12);
+        byte[] payload = new byte[length];
+        buf.position(start + HEADER_SIZE);
+        buf.get(payload);
+        return new Frame(action, requestId, flags, payload);
+    }
+
+    private static void checkLength(int length) throws IOException {
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new IOException("Largo de trama inválido: " + length);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package hospital.protocol;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Una página de resultados de una acción paginada (*_SEARCH_PAGE, RECETA_GET_HISTORICO_PAGE).
+ *
+ * El cursor es opaco para el cliente: solo lo devuelve tal cual para pedir la página
+ * siguiente. Es null cuando no hay más resultados.
+ * @param <T> La entidad de cada fila.
+ */
+public class Page<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public Page(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /** El cursor para pedir la página siguiente, o null si esta es la última. */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,73 @@
+package hospital.protocol;
+
+public class Protocol {
+    public static final String SERVER = "localhost";
+    public static final int SYNC_PORT = 1234;
+
+    public static final int OK = 0;
+    public static final int ERROR = 1;
+
+    // Sesión: LOGIN responde el Usuario con su token (Usuario.getToken) y deja la sesión asociada
+    // a la conexión; las demás acciones (salvo CHPASS) piden una sesión vigente en la conexión.
+    // SESSION_RESUME (parámetro: String token) asocia a la conexión una sesión ya abierta
+    // (p. ej. al reconectar) y responde su Usuario; LOGOUT cierra la sesión de la conexión.
+    public static final int LOGIN = 100;
+    public static final int CHPASS = 101;
+    public static final int SESSION_RESUME = 102;
+    public static final int LOGOUT = 103;
+
+    // Acciones paginadas (*_SEARCH_PAGE, RECETA_GET_HISTORICO_PAGE):
+    // parámetros String filtro ("" = todos), Integer tamaño de página, String cursor (null = primera);
+    // respuesta: Page con las filas y el cursor de la página siguiente.
+
+    public static final int MEDICAMENTO_CREATE = 200;
+    public static final int MEDICAMENTO_READ = 201;
+    public static final int MEDICAMENTO_UPDATE = 202;
+    public static final int MEDICAMENTO_DELETE = 203;
+    public static final int MEDICAMENTO_SEARCH = 204;
+    public static final int MEDICAMENTO_GET_ALL = 205;
+    public static final int MEDICAMENTO_SEARCH_PAGE = 206;
+
+    public static final int PACIENTE_CREATE = 300;
+    public static final int PACIENTE_READ = 301;
+    public static final int PACIENTE_UPDATE = 302;
+    public static final int PACIENTE_DELETE = 303;
+    public static final int PACIENTE_SEARCH = 304;
+    public static final int PACIENTE_GET_ALL = 305;
+    public static final int PACIENTE_SEARCH_PAGE = 306;
+
+    public static final int MEDICO_CREATE = 400;
+    public static final int MEDICO_READ = 401;
+    public static final int MEDICO_UPDATE = 402;
+    public static final int MEDICO_DELETE = 403;
+    public static final int MEDICO_SEARCH = 404;
+    public static final int MEDICO_GET_ALL = 405;
+    public static final int MEDICO_SEARCH_PAGE = 406;
+
+    public static final int FARMACEUTA_CREATE = 500;
+    public static final int FARMACEUTA_READ = 501;
+    public static final int FARMACEUTA_UPDATE = 502;
+    public static final int FARMACEUTA_DELETE = 503;
+    public static final int FARMACEUTA_SEARCH = 504;
+    public static final int FARMACEUTA_GET_ALL = 505;
+    public static final int FARMACEUTA_SEARCH_PAGE = 506;
+
+    public static final int RECETA_CREATE = 600;
+    public static final int RECETA_UPDATE_ESTADO = 601;
+    public static final int RECETA_GET_DESPACHO = 602;
+    public static final int RECETA_GET_HISTORICO = 603;
+    public static final int RECETA_GET_ALL = 604;
+    public static final int RECETA_GET_HISTORICO_PAGE = 605;
+
+    public static final int DASHBOARD_GET_RECETAS_ESTADO = 700;
+    public static final int DASHBOARD_GET_MEDICAMENTOS_MES = 701;
+
+    public static final int CHAT_SEND = 800;
+
+    // Lote: varias operaciones en una sola petición.
+    // Parámetros: Boolean transaccional, List<List<Object>> operaciones; cada operación es
+    // [código de acción, parámetros...]. Respuesta: List<Object> con el resultado de cada
+    // operación, en el mismo orden (una Exception si esa operación falló). Si el lote es
+    // transaccional, la primera falla deshace todo y la respuesta es esa Exception.
+    public static final int BATCH = 900;
+}
@@ -0,0 +1,90 @@
+package hospital.protocol;
+
+/**
+ * Cuándo vaciar la tabla de handles del flujo de objetos de un Codec.
+ *
+ * Mientras no se haga reset(), el ObjectOutputStream guarda una referencia a cada objeto
+ * que escribió: la memoria crece durante toda la conexión y un objeto que se vuelve a
+ * enviar después de modificarlo viaja como referencia a la copia vieja.
+ *
+ * Se configura con -Dprotocol.reset (vale igual para el backend y el frontend):
+ *   message     reset al terminar cada mensaje que llevó objetos (por defecto)
+ *   bytes:N     reset cuando los objetos enviados desde el último reset suman N bytes
+ *   objects:N   reset cuando la tabla de handles llega a N objetos
+ *   never       nunca (el comportamiento anterior)
+ */
+public class ResetPolicy {
+    public enum Mode { NEVER, MESSAGE, BYTES, OBJECTS }
+
+    private final Mode mode;
+    private final long limit;
+
+    public ResetPolicy(Mode mode, long limit) {
+        this.mode = mode;
+        this.limit = limit;
+    }
+
+    /** La política indicada en -Dprotocol.reset, o "message" si no se indicó. */
+    public static ResetPolicy fromSystem() {
+        return parse(System.getProperty("protocol.reset", "message"));
+    }
+
+    /**
+     * Interpreta el texto de la propiedad protocol.reset.
+     * @throws IllegalArgumentException Si el texto no es una política válida.
+     */
+    public static ResetPolicy parse(String text) {
+        String value = text.trim().toLowerCase();
+        if (value.equals("never")) return new ResetPolicy(Mode.NEVER, 0);
+        if (value.equals("message")) return new ResetPolicy(Mode.MESSAGE, 0);
+        int colon = value.indexOf(':');
+        if (colon > 0) {
+            String name = value.substring(0, colon);
+            long limit;
+            try {
+                limit = Long.parseLong(value.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Límite inválido en la política de reset: " + text);
+            }
+            if (limit <= 0) {
+                throw new IllegalArgumentException("El límite de la política de reset debe ser positivo: " + text);
+            }
+            if (name.equals("bytes")) return new ResetPolicy(Mode.BYTES, limit);
+            if (name.equals("objects")) return new ResetPolicy(Mode.OBJECTS, limit);
+        }
+        throw new IllegalArgumentException("Política de reset desconocida: " + text
+                + " (use message, bytes:N, objects:N o never)");
+    }
+
+    /**
+     * ¿Hay que hacer reset al terminar el mensaje actual?
+     * @param bytes Bytes de objetos escritos desde el último reset.
+     * @param objects Objetos en la tabla de handles desde el último reset.
+     */
+    public boolean shouldReset(long bytes, long objects) {
+        if (objects == 0) return false; // Nada que olvidar
+        switch (mode) {
+            case MESSAGE: return true;
+            case BYTES: return bytes >= limit;
+            case OBJECTS: return objects >= limit;
+            default: return false;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+            case BYTES: return "bytes:" + limit;
+            case OBJECTS: return "objects:" + limit;
+            default: return mode.name().toLowerCase();
+        }
+    }
+}
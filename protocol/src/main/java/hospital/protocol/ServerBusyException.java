@@ -0,0 +1,19 @@
+package hospital.protocol;
+
+/**
+ * Respuesta del servidor cuando está saturado y no pudo atender la petición a tiempo.
+ * La petición NO se ejecutó, así que el cliente puede reintentarla sin riesgo
+ * después de esperar (al menos) getRetryAfterMillis().
+ */
+public class ServerBusyException extends Exception {
+    private final long retryAfterMillis;
+
+    public ServerBusyException(long retryAfterMillis) {
+        super("Servidor ocupado, reintente en " + retryAfterMillis + " ms");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -7,6 +7,7 @@ public class Usuario implements Serializable {
     protected String clave;
     protected String nombre;
     protected String tipo;
+    protected String token; // Token de la sesión que abre LOGIN en el servidor (null si no hay)
 
     public Usuario() {
         this.id = "";
@@ -56,4 +57,12 @@ public class Usuario implements Serializable {
     public void setTipo(String tipo) {
         this.tipo = tipo;
     }
-}
\ No newline at end of file
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}